@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+
+/*
+    Checks the labels DayLabels builds against the code Utility used to build them with, that
+    they roll over at midnight, and logs what labelling 10,000 list rows costs each way.
+ */
+public class TestDayLabels extends AndroidTestCase {
+    public static final String LOG_TAG = TestDayLabels.class.getSimpleName();
+
+    private static final int BENCHMARK_ROWS = 10000;
+    private static final int FORECAST_DAYS = 14;
+
+    // Noon on the given day from today, local time.
+    private static long noon(int daysFromToday) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 12);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_YEAR, daysFromToday);
+        return calendar.getTimeInMillis();
+    }
+
+    private static long localTime(long noon, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(noon);
+        calendar.set(Calendar.HOUR_OF_DAY, hour);
+        calendar.set(Calendar.MINUTE, minute);
+        return calendar.getTimeInMillis();
+    }
+
+    public void testMatchesLegacy() {
+        DayLabels labels = new DayLabels(mContext);
+        long now = noon(0);
+        // Twice, so the second pass comes from the cache.
+        for (int pass = 0; pass < 2; pass++) {
+            for (int day = -1; day < FORECAST_DAYS + 7; day++) {
+                long date = noon(day);
+                assertEquals("Friendly day " + day, legacyFriendlyDayString(mContext, date, now),
+                        labels.getFriendlyDayString(date, now));
+                assertEquals("Full friendly day " + day,
+                        legacyFullFriendlyDayString(mContext, date, now),
+                        labels.getFullFriendlyDayString(date, now));
+                assertEquals("Day name " + day, legacyDayName(mContext, date, now),
+                        labels.getDayName(date, now));
+                assertEquals("Month day " + day, legacyFormattedMonthDay(date),
+                        labels.getFormattedMonthDay(date, now));
+            }
+        }
+        assertTrue("The second pass should have been served from the cache",
+                labels.getHitCount() >= labels.getMissCount());
+    }
+
+    public void testRollsOverAtMidnight() {
+        DayLabels labels = new DayLabels(mContext);
+        long today = noon(0);
+        long tomorrow = noon(1);
+        long beforeMidnight = localTime(today, 23, 59);
+        long afterMidnight = localTime(tomorrow, 0, 1);
+
+        assertEquals(mContext.getString(R.string.today),
+                labels.getDayName(today, beforeMidnight));
+        assertEquals(mContext.getString(R.string.tomorrow),
+                labels.getDayName(tomorrow, beforeMidnight));
+
+        assertEquals("Tomorrow should become today after midnight",
+                mContext.getString(R.string.today), labels.getDayName(tomorrow, afterMidnight));
+        assertEquals("Yesterday should no longer be today after midnight",
+                legacyDayName(mContext, today, afterMidnight),
+                labels.getDayName(today, afterMidnight));
+    }
+
+    public void testRowBenchmark() {
+        DayLabels labels = new DayLabels(mContext);
+        long now = System.currentTimeMillis();
+        long[] dates = new long[FORECAST_DAYS];
+        for (int day = 0; day < FORECAST_DAYS; day++) {
+            dates[day] = noon(day);
+        }
+
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int row = 0; row < BENCHMARK_ROWS; row++) {
+            sink += legacyFriendlyDayString(mContext, dates[row % FORECAST_DAYS], now).length();
+        }
+        long legacyNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int row = 0; row < BENCHMARK_ROWS; row++) {
+            sink += labels.getFriendlyDayString(dates[row % FORECAST_DAYS], now).length();
+        }
+        long cachedNanos = System.nanoTime() - start;
+
+        Log.d(LOG_TAG, "Labelling " + BENCHMARK_ROWS + " rows: legacy took "
+                + legacyNanos / BENCHMARK_ROWS + "ns per row, DayLabels took "
+                + cachedNanos / BENCHMARK_ROWS + "ns per row with " + labels.getMissCount()
+                + " misses (" + sink + ")");
+    }
+
+    // What Utility did before DayLabels, with "now" passed in.
+    private static String legacyFriendlyDayString(Context context, long dateInMillis, long now) {
+        Time time = new Time();
+        time.set(now);
+        int julianDay = Time.getJulianDay(dateInMillis, time.gmtoff);
+        int currentJulianDay = Time.getJulianDay(now, time.gmtoff);
+        if (julianDay == currentJulianDay) {
+            return context.getString(R.string.format_full_friendly_date,
+                    context.getString(R.string.today), legacyFormattedMonthDay(dateInMillis));
+        } else if (julianDay < currentJulianDay + 7) {
+            return legacyDayName(context, dateInMillis, now);
+        }
+        return new SimpleDateFormat("EEE MMM dd").format(dateInMillis);
+    }
+
+    private static String legacyFullFriendlyDayString(Context context, long dateInMillis,
+            long now) {
+        return context.getString(R.string.format_full_friendly_date,
+                legacyDayName(context, dateInMillis, now), legacyFormattedMonthDay(dateInMillis));
+    }
+
+    private static String legacyDayName(Context context, long dateInMillis, long now) {
+        Time t = new Time();
+        t.set(now);
+        int julianDay = Time.getJulianDay(dateInMillis, t.gmtoff);
+        int currentJulianDay = Time.getJulianDay(now, t.gmtoff);
+        if (julianDay == currentJulianDay) {
+            return context.getString(R.string.today);
+        } else if (julianDay == currentJulianDay + 1) {
+            return context.getString(R.string.tomorrow);
+        }
+        return new SimpleDateFormat("EEEE").format(dateInMillis);
+    }
+
+    private static String legacyFormattedMonthDay(long dateInMillis) {
+        return new SimpleDateFormat("MMMM dd").format(dateInMillis);
+    }
+}
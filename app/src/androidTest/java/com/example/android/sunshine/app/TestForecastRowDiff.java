@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.database.MatrixCursor;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.TestUtilities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Checks that a new load of the forecast only reports the rows that actually changed, with
+    payloads saying which parts of them changed.
+ */
+public class TestForecastRowDiff extends AndroidTestCase {
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+    // Midnight UTC, 2017-03-11.
+    private static final long FIRST_DAY = 17236 * DAY_IN_MILLIS;
+
+    /**
+     * Records what DiffUtil reports, one string per event.
+     */
+    private static class RecordingCallback implements ListUpdateCallback {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onInserted(int position, int count) {
+            events.add("insert " + position + " " + count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            events.add("remove " + position + " " + count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            events.add("move " + fromPosition + " " + toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            events.add("change " + position + " " + count + " " + payload);
+        }
+    }
+
+    // Days firstDay to firstDay + count - 1, with the high for hotDay raised by ten degrees.
+    private ForecastRow[] createRows(int firstDay, int count, int hotDay) {
+        MatrixCursor cursor = TestUtilities.createForecastCursor();
+        for (int day = firstDay; day < firstDay + count; day++) {
+            double high = 20 + (day == hotDay ? 10 : 0);
+            TestUtilities.addForecastRow(cursor, day, FIRST_DAY + day * DAY_IN_MILLIS, high, 10.0,
+                    800);
+        }
+        return ForecastRow.fromCursor(mContext, cursor);
+    }
+
+    private List<String> diff(ForecastRow[] oldRows, ForecastRow[] newRows,
+            boolean useTodayLayout) {
+        RecordingCallback callback = new RecordingCallback();
+        DiffUtil.calculateDiff(new ForecastRowDiff(oldRows, newRows, useTodayLayout))
+                .dispatchUpdatesTo(callback);
+        return callback.events;
+    }
+
+    public void testIdenticalLoadReportsNothing() {
+        List<String> events = diff(createRows(0, 14, -1), createRows(0, 14, -1), true);
+        assertTrue("Reloading the same forecast should change nothing: " + events,
+                events.isEmpty());
+    }
+
+    public void testOneChangedDay() {
+        List<String> events = diff(createRows(0, 14, -1), createRows(0, 14, 5), true);
+        assertEquals(1, events.size());
+        assertEquals("Only the high of day 5 should change",
+                "change 5 1 " + ForecastRow.CHANGED_HIGH, events.get(0));
+    }
+
+    public void testRollingWindow() {
+        // The next day's sync drops yesterday, adds a new last day and changes one in between.
+        // DiffUtil reports from the end of the list backwards, so positions are the old ones.
+        List<String> events = diff(createRows(0, 14, -1), createRows(1, 14, 8), false);
+        assertTrue("Yesterday should be removed: " + events, events.contains("remove 0 1"));
+        assertTrue("The new day should be inserted: " + events, events.contains("insert 14 1"));
+        assertTrue("Day 8 should change in place: " + events,
+                events.contains("change 8 1 " + ForecastRow.CHANGED_HIGH));
+        assertEquals("Nothing else should be reported: " + events, 3, events.size());
+    }
+
+    public void testNewTodayRowIsRebound() {
+        List<String> events = diff(createRows(0, 14, -1), createRows(1, 13, -1), true);
+        assertTrue("Yesterday should be removed: " + events, events.contains("remove 0 1"));
+        assertTrue("The day moving into the today layout should be fully rebound: " + events,
+                events.contains("change 1 1 null"));
+        assertEquals("Nothing else should be reported: " + events, 2, events.size());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.MatrixCursor;
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.AbsListView;
+
+import com.example.android.sunshine.app.data.TestUtilities;
+
+/*
+    Checks the rows ForecastLoader formats ahead of time against what ForecastAdapter used to
+    format on every bind, and logs what a fling costs the main thread each way.
+ */
+public class TestForecastRows extends AndroidTestCase {
+    public static final String LOG_TAG = TestForecastRows.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+    private static final int FORECAST_DAYS = 14;
+    // A fling through the list binds a few rows per frame, for a second or so.
+    private static final int FLING_FRAMES = 60;
+    private static final int BINDS_PER_FRAME = 3;
+
+    private static MatrixCursor createForecastCursor() {
+        MatrixCursor cursor = TestUtilities.createForecastCursor();
+        long today = System.currentTimeMillis();
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            TestUtilities.addForecastRow(cursor, i, today + i * DAY_IN_MILLIS, 21.5 + i, 8.25 - i,
+                    500 + 50 * i);
+        }
+        return cursor;
+    }
+
+    public void testRowsMatchUtility() {
+        MatrixCursor cursor = createForecastCursor();
+        ForecastRow[] rows = ForecastRow.fromCursor(mContext, cursor);
+        assertEquals("Every record should have a row", cursor.getCount(), rows.length);
+
+        for (int i = 0; i < rows.length; i++) {
+            cursor.moveToPosition(i);
+            ForecastRow row = rows[i];
+            int weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+            long date = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+            String description = Utility.getStringForWeatherCondition(mContext, weatherId);
+            String high = Utility.formatTemperature(mContext,
+                    cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP));
+            String low = Utility.formatTemperature(mContext,
+                    cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP));
+
+            assertEquals(date, row.dateInMillis);
+            assertEquals(Utility.getIconResourceForWeatherCondition(weatherId), row.iconResource);
+            assertEquals(Utility.getArtResourceForWeatherCondition(weatherId), row.artResource);
+            assertEquals("iconView" + date, row.transitionName);
+            assertEquals(Utility.getFriendlyDayString(mContext, date), row.dateText);
+            assertEquals(description, row.description);
+            assertEquals(mContext.getString(R.string.a11y_forecast, description),
+                    row.descriptionContentDescription);
+            assertEquals(high, row.highText);
+            assertEquals(mContext.getString(R.string.a11y_high_temp, high),
+                    row.highContentDescription);
+            assertEquals(low, row.lowText);
+            assertEquals(mContext.getString(R.string.a11y_low_temp, low),
+                    row.lowContentDescription);
+        }
+    }
+
+    public void testFlingBenchmark() {
+        Context themed = new ContextThemeWrapper(mContext, R.style.AppTheme);
+        RecyclerView recyclerView = new RecyclerView(themed);
+        ForecastAdapter adapter = new ForecastAdapter(themed, null, new View(themed),
+                AbsListView.CHOICE_MODE_NONE);
+        MatrixCursor cursor = createForecastCursor();
+        adapter.swapCursor(cursor);
+        ForecastAdapter.ForecastAdapterViewHolder holder = adapter.onCreateViewHolder(
+                recyclerView, adapter.getItemViewType(1));
+
+        // What each bind used to format, on the main thread: one row's worth of ForecastRow.
+        long formatNanos = 0;
+        long bindNanos = 0;
+        long worstFrameNanos = 0;
+        int binds = FLING_FRAMES * BINDS_PER_FRAME;
+        for (int frame = 0; frame < FLING_FRAMES; frame++) {
+            long frameStart = System.nanoTime();
+            for (int i = 0; i < BINDS_PER_FRAME; i++) {
+                adapter.onBindViewHolder(holder, 1 + (frame * BINDS_PER_FRAME + i)
+                        % (FORECAST_DAYS - 1));
+            }
+            long frameNanos = System.nanoTime() - frameStart;
+            bindNanos += frameNanos;
+            worstFrameNanos = Math.max(worstFrameNanos, frameNanos);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < BINDS_PER_FRAME; i++) {
+                ForecastRow.fromCursor(mContext, cursor);
+            }
+            formatNanos += (System.nanoTime() - start) / FORECAST_DAYS;
+        }
+
+        Log.d(LOG_TAG, "Fling of " + FLING_FRAMES + " frames, " + BINDS_PER_FRAME
+                + " binds each: binding prebuilt rows took " + bindNanos / FLING_FRAMES
+                + "ns per frame (worst " + worstFrameNanos + "ns); formatting those rows on bind"
+                + " would have added " + formatNanos / FLING_FRAMES + "ns per frame, "
+                + formatNanos / binds + "ns per bind");
+    }
+}
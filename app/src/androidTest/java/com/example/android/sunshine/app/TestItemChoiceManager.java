@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+
+/*
+    Checks that ItemChoiceManager finds a checked item again after the data changes, through
+    the adapter's id index when it has one, and logs what that costs next to searching for it.
+ */
+public class TestItemChoiceManager extends AndroidTestCase {
+    public static final String LOG_TAG = TestItemChoiceManager.class.getSimpleName();
+
+    private static final int[] LIST_SIZES = {14, 1000, 50000};
+    private static final int BENCHMARK_CHANGES = 10000;
+    // Less than CHECK_POSITION_SEARCH_DISTANCE, so searching finds the item too.
+    private static final int SMALL_SHIFT = 5;
+
+    /**
+     * An adapter whose ids are consecutive, starting wherever the test puts them.
+     */
+    private static class FakeAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        final int mCount;
+        long mFirstId;
+
+        FakeAdapter(int count) {
+            mCount = count;
+            setHasStableIds(true);
+        }
+
+        void setFirstId(long firstId) {
+            mFirstId = firstId;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            if (position < 0 || position >= mCount) return RecyclerView.NO_ID;
+            return mFirstId + position;
+        }
+
+        @Override
+        public int getItemCount() {
+            return mCount;
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        }
+    }
+
+    /**
+     * The same adapter with an id index, kept the way ForecastAdapter keeps it.
+     */
+    private static class IndexedAdapter extends FakeAdapter
+            implements ItemChoiceManager.PositionIndex {
+        private final LongIntMap mPositions;
+
+        IndexedAdapter(int count) {
+            super(count);
+            mPositions = new LongIntMap(count);
+            setFirstId(0);
+        }
+
+        @Override
+        void setFirstId(long firstId) {
+            super.setFirstId(firstId);
+            mPositions.reset(mCount);
+            for (int i = 0; i < mCount; i++) {
+                mPositions.put(firstId + i, i);
+            }
+        }
+
+        @Override
+        public int getPositionForId(long id) {
+            int position = mPositions.get(id);
+            return position == LongIntMap.NOT_FOUND ? RecyclerView.NO_POSITION : position;
+        }
+    }
+
+    private static ItemChoiceManager checkMiddle(FakeAdapter adapter) {
+        ItemChoiceManager icm = new ItemChoiceManager(adapter);
+        icm.setChoiceMode(AbsListView.CHOICE_MODE_SINGLE);
+        int middle = adapter.getItemCount() / 2;
+        icm.mCheckStates.put(middle, true);
+        icm.addCheckedId(adapter.getItemId(middle), middle);
+        return icm;
+    }
+
+    public void testFollowsMovedItem() {
+        for (int size : LIST_SIZES) {
+            for (FakeAdapter adapter : new FakeAdapter[] {new FakeAdapter(size),
+                    new IndexedAdapter(size)}) {
+                ItemChoiceManager icm = checkMiddle(adapter);
+                // Items are inserted in front of the checked one.
+                adapter.setFirstId(-SMALL_SHIFT);
+                icm.confirmCheckedPositionsById(size);
+                assertEquals("Checked item should move with its id in a list of " + size,
+                        size / 2 + SMALL_SHIFT, icm.getSelectedItemPosition());
+            }
+        }
+    }
+
+    public void testIndexFindsDistantItem() {
+        int size = 1000;
+        int shift = 200;
+
+        FakeAdapter searchingAdapter = new FakeAdapter(size);
+        ItemChoiceManager searching = checkMiddle(searchingAdapter);
+        searchingAdapter.setFirstId(-shift);
+        searching.confirmCheckedPositionsById(size);
+        assertEquals("Searching gives up on an item moved this far",
+                RecyclerView.NO_POSITION, searching.getSelectedItemPosition());
+
+        IndexedAdapter indexedAdapter = new IndexedAdapter(size);
+        ItemChoiceManager indexed = checkMiddle(indexedAdapter);
+        indexedAdapter.setFirstId(-shift);
+        indexed.confirmCheckedPositionsById(size);
+        assertEquals("The index should find the item wherever it moved",
+                size / 2 + shift, indexed.getSelectedItemPosition());
+
+        indexedAdapter.setFirstId(size);
+        indexed.confirmCheckedPositionsById(size);
+        assertEquals("An item that is gone should be unchecked",
+                RecyclerView.NO_POSITION, indexed.getSelectedItemPosition());
+    }
+
+    public void testLongIntMap() {
+        LongIntMap map = new LongIntMap(2);
+        // Enough keys to grow it several times, spread well apart.
+        for (int i = 0; i < 1000; i++) {
+            map.put(i * 86400000L, i);
+        }
+        assertEquals(1000, map.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.get(i * 86400000L));
+        }
+        assertEquals(LongIntMap.NOT_FOUND, map.get(1L));
+
+        map.put(0L, 7);
+        assertEquals("Putting a key again should replace its value", 7, map.get(0L));
+        assertEquals(1000, map.size());
+
+        map.reset(14);
+        assertEquals(0, map.size());
+        assertEquals(LongIntMap.NOT_FOUND, map.get(86400000L));
+    }
+
+    public void testReselectionBenchmark() {
+        for (int size : LIST_SIZES) {
+            long searchNanos = timeReselection(new FakeAdapter(size));
+            long indexNanos = timeReselection(new IndexedAdapter(size));
+
+            IndexedAdapter adapter = new IndexedAdapter(size);
+            long start = System.nanoTime();
+            adapter.setFirstId(SMALL_SHIFT);
+            long indexBuildNanos = System.nanoTime() - start;
+
+            Log.d(LOG_TAG, size + " items: reselecting by searching took "
+                    + searchNanos / BENCHMARK_CHANGES + "ns, by index "
+                    + indexNanos / BENCHMARK_CHANGES + "ns; rebuilding the index took "
+                    + indexBuildNanos + "ns per data change");
+        }
+    }
+
+    // Moves the checked item back and forth and times finding it again, without the time
+    // the adapter takes to change its data.
+    private static long timeReselection(FakeAdapter adapter) {
+        ItemChoiceManager icm = checkMiddle(adapter);
+        long nanos = 0;
+        for (int i = 0; i < BENCHMARK_CHANGES; i++) {
+            adapter.setFirstId(i % 2 == 0 ? -SMALL_SHIFT : 0);
+            long start = System.nanoTime();
+            icm.confirmCheckedPositionsById(adapter.getItemCount());
+            nanos += System.nanoTime() - start;
+        }
+        assertTrue("The checked item should never be lost",
+                icm.getSelectedItemPosition() != RecyclerView.NO_POSITION);
+        return nanos;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.MatrixCursor;
+import android.preference.PreferenceManager;
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.AbsListView;
+
+import com.example.android.sunshine.app.data.TestUtilities;
+
+/*
+    Checks that the settings snapshot follows the preferences, and logs what binding a forecast
+    row costs now next to the preference reads every bind used to make.
+ */
+public class TestSunshinePreferences extends AndroidTestCase {
+    public static final String LOG_TAG = TestSunshinePreferences.class.getSimpleName();
+
+    private static final int BENCHMARK_BINDS = 2000;
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    private SharedPreferences mPrefs;
+    private String mUnitsKey;
+    private String mArtPackKey;
+    private String mSavedUnits;
+    private String mSavedArtPack;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mUnitsKey = mContext.getString(R.string.pref_units_key);
+        mArtPackKey = mContext.getString(R.string.pref_art_pack_key);
+        mSavedUnits = mPrefs.getString(mUnitsKey, null);
+        mSavedArtPack = mPrefs.getString(mArtPackKey, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        restore(mUnitsKey, mSavedUnits);
+        restore(mArtPackKey, mSavedArtPack);
+        super.tearDown();
+    }
+
+    private void restore(String key, String value) {
+        if (value == null) {
+            SunshinePreferences.commit(mContext, mPrefs.edit().remove(key));
+        } else {
+            SunshinePreferences.commit(mContext, mPrefs.edit().putString(key, value));
+        }
+    }
+
+    private void setUnits(int unitsId) {
+        SunshinePreferences.commit(mContext,
+                mPrefs.edit().putString(mUnitsKey, mContext.getString(unitsId)));
+    }
+
+    public void testSnapshotFollowsPreferences() {
+        setUnits(R.string.pref_units_imperial);
+        SunshinePreferences imperial = SunshinePreferences.get(mContext);
+        assertFalse("Snapshot should show imperial units", imperial.metric);
+        assertFalse("Utility should show imperial units", Utility.isMetric(mContext));
+        assertSame("An unchanged snapshot should be reused",
+                imperial, SunshinePreferences.get(mContext));
+
+        setUnits(R.string.pref_units_metric);
+        assertTrue("Snapshot should show metric units", SunshinePreferences.get(mContext).metric);
+        assertFalse("An old snapshot should never change", imperial.metric);
+
+        assertEquals("Snapshot location should match the preference",
+                mPrefs.getString(mContext.getString(R.string.pref_location_key),
+                        mContext.getString(R.string.pref_location_default)),
+                SunshinePreferences.get(mContext).location);
+    }
+
+    public void testBindBenchmark() {
+        // Remote art goes through Glide, which only loads into views on the main thread.
+        SunshinePreferences.commit(mContext, mPrefs.edit().remove(mArtPackKey));
+        assertTrue(SunshinePreferences.get(mContext).localGraphics);
+
+        Context themed = new ContextThemeWrapper(mContext, R.style.AppTheme);
+        RecyclerView recyclerView = new RecyclerView(themed);
+        ForecastAdapter adapter = new ForecastAdapter(themed, null, new View(themed),
+                AbsListView.CHOICE_MODE_NONE);
+
+        MatrixCursor cursor = TestUtilities.createForecastCursor();
+        long today = System.currentTimeMillis();
+        for (int i = 0; i < 14; i++) {
+            TestUtilities.addForecastRow(cursor, i, today + i * DAY_IN_MILLIS, 21.5 + i, 8.25 - i,
+                    800 + (i % 5));
+        }
+        adapter.swapCursor(cursor);
+
+        ForecastAdapter.ForecastAdapterViewHolder holder = adapter.onCreateViewHolder(
+                recyclerView, adapter.getItemViewType(1));
+
+        // Warm up before timing.
+        for (int i = 0; i < 100; i++) {
+            adapter.onBindViewHolder(holder, 1 + i % (cursor.getCount() - 1));
+            readPreferencesLegacy(mContext);
+        }
+
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_BINDS; i++) {
+            adapter.onBindViewHolder(holder, 1 + i % (cursor.getCount() - 1));
+        }
+        long bindNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_BINDS; i++) {
+            sink += readPreferencesLegacy(mContext);
+        }
+        long legacyNanos = System.nanoTime() - start;
+
+        Log.d(LOG_TAG, "Binding a forecast row took " + bindNanos / BENCHMARK_BINDS
+                + "ns; the preference reads it used to make per bind took another "
+                + legacyNanos / BENCHMARK_BINDS + "ns (" + sink + ")");
+    }
+
+    // The preference reads a bind made before the snapshot: isMetric for each of the two
+    // temperatures, plus usingLocalGraphics.
+    private static int readPreferencesLegacy(Context context) {
+        int sink = 0;
+        for (int i = 0; i < 2; i++) {
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+            if (prefs.getString(context.getString(R.string.pref_units_key),
+                    context.getString(R.string.pref_units_metric))
+                    .equals(context.getString(R.string.pref_units_metric))) {
+                sink++;
+            }
+        }
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        if (prefs.getString(context.getString(R.string.pref_art_pack_key),
+                sunshineArtPack).equals(sunshineArtPack)) {
+            sink++;
+        }
+        return sink;
+    }
+}
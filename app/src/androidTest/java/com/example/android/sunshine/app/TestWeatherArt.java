@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.AbsListView;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+    Checks the parts of WeatherArt, the list's art preloader and the art cache that don't need
+    the network.
+ */
+public class TestWeatherArt extends AndroidTestCase {
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private String mArtPackKey;
+    private String mSavedArtPack;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mArtPackKey = mContext.getString(R.string.pref_art_pack_key);
+        mSavedArtPack = PreferenceManager.getDefaultSharedPreferences(mContext)
+                .getString(mArtPackKey, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SharedPreferences.Editor editor =
+                PreferenceManager.getDefaultSharedPreferences(mContext).edit();
+        if (mSavedArtPack == null) {
+            editor.remove(mArtPackKey);
+        } else {
+            editor.putString(mArtPackKey, mSavedArtPack);
+        }
+        SunshinePreferences.commit(mContext, editor);
+        super.tearDown();
+    }
+
+    public void testWarmSkipsLocalGraphics() {
+        SunshinePreferences.commit(mContext, PreferenceManager.getDefaultSharedPreferences(mContext)
+                .edit()
+                .putString(mArtPackKey, mContext.getString(R.string.pref_art_pack_sunshine)));
+        assertTrue(SunshinePreferences.get(mContext).localGraphics);
+
+        int requests = WeatherArt.getRequestCount();
+        assertEquals("Nothing should be downloaded for Sunshine's own art", 0,
+                WeatherArt.warm(mContext));
+        assertEquals("Warming shouldn't count towards the hit ratio", requests,
+                WeatherArt.getRequestCount());
+    }
+
+    /**
+     * Every row has the same art, standing in for a whole list of the same weather.
+     */
+    private static class ArtAdapter extends ForecastAdapter {
+        private final int mCount;
+        private final String mUrl;
+
+        ArtAdapter(Context context, int count, String url) {
+            super(context, null, new View(context), AbsListView.CHOICE_MODE_NONE);
+            mCount = count;
+            mUrl = url;
+        }
+
+        @Override
+        public int getItemCount() {
+            return mCount;
+        }
+
+        @Override
+        String getListIconUrl(int position) {
+            return mUrl;
+        }
+    }
+
+    // Glide only starts requests on the main thread.
+    private static void runOnMainThread(final Runnable runnable) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } finally {
+                    done.countDown();
+                }
+            }
+        });
+        assertTrue("Error: the main thread didn't get to it",
+                done.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    public void testPreloaderForgetsRowsWhenDataChanges() {
+        Context themed = new ContextThemeWrapper(mContext, R.style.AppTheme);
+        ArtAdapter adapter = new ArtAdapter(themed, 20, "unused");
+        final List<Integer> preloaded = new ArrayList<>();
+        ForecastArtPreloader preloader = new ForecastArtPreloader(themed, adapter, 3) {
+            @Override
+            Target<GlideDrawable> preload(int position) {
+                preloaded.add(position);
+                return null;
+            }
+        };
+
+        preloader.preloadAround(0, 4, 1);
+        assertEquals(Arrays.asList(5, 6, 7), preloaded);
+        preloaded.clear();
+        preloader.preloadAround(0, 4, 1);
+        assertTrue("Error: preloaded the same rows twice", preloaded.isEmpty());
+
+        // A sync can put other days at the same positions.
+        adapter.notifyItemRangeInserted(0, 1);
+        preloader.preloadAround(0, 4, 1);
+        assertEquals("Error: skipped rows after an insert", Arrays.asList(5, 6, 7), preloaded);
+        preloaded.clear();
+        adapter.notifyDataSetChanged();
+        preloader.preloadAround(0, 4, 1);
+        assertEquals("Error: skipped rows after a reload", Arrays.asList(5, 6, 7), preloaded);
+    }
+
+    public void testPreloadIsMemoryHitForListIcon() throws Exception {
+        File art = new File(mContext.getCacheDir(), "test_art.png");
+        Bitmap bitmap = Bitmap.createBitmap(256, 256, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.BLUE);
+        FileOutputStream out = new FileOutputStream(art);
+        try {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } finally {
+            out.close();
+            bitmap.recycle();
+        }
+        final String url = art.getAbsolutePath();
+        final Context themed = new ContextThemeWrapper(mContext, R.style.AppTheme);
+        final ForecastArtPreloader preloader =
+                new ForecastArtPreloader(themed, new ArtAdapter(themed, 2, url), 1);
+
+        final AtomicReference<Target<GlideDrawable>> preloadTarget = new AtomicReference<>();
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                preloadTarget.set(preloader.preload(1));
+            }
+        });
+        PollingCheck.check("Error: the preload didn't finish", TIMEOUT_MILLIS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return preloadTarget.get().getRequest().isComplete();
+                    }
+                });
+
+        // The icon as ForecastAdapter binds it: the row's ImageView, with its size and scale
+        // type from the layout, and the same request minus what doesn't change the cache key.
+        View item = LayoutInflater.from(themed).inflate(R.layout.list_item_forecast,
+                new FrameLayout(themed), false);
+        final ImageView icon = (ImageView) item.findViewById(R.id.list_item_icon);
+        final AtomicBoolean ready = new AtomicBoolean();
+        final AtomicBoolean fromMemory = new AtomicBoolean();
+        try {
+            runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    Glide.with(themed)
+                            .load(url)
+                            .diskCacheStrategy(DiskCacheStrategy.ALL)
+                            .listener(new RequestListener<String, GlideDrawable>() {
+                                @Override
+                                public boolean onException(Exception e, String model,
+                                        Target<GlideDrawable> target, boolean isFirstResource) {
+                                    return false;
+                                }
+
+                                @Override
+                                public boolean onResourceReady(GlideDrawable resource,
+                                        String model, Target<GlideDrawable> target,
+                                        boolean isFromMemoryCache, boolean isFirstResource) {
+                                    ready.set(true);
+                                    fromMemory.set(isFromMemoryCache);
+                                    return false;
+                                }
+                            })
+                            .into(icon);
+                }
+            });
+            // A memory hit is delivered before into() returns.
+            assertTrue("Error: the list icon had to wait for the preloaded art", ready.get());
+            assertTrue("Error: the list icon missed the preloaded art", fromMemory.get());
+        } finally {
+            runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    Glide.clear(icon);
+                    Glide.clear(preloadTarget.get());
+                }
+            });
+            art.delete();
+        }
+    }
+
+    public void testArtCacheDeletesGlidesDefaultCache() throws Exception {
+        File oldCache = new File(mContext.getCacheDir(), DiskCache.Factory.DEFAULT_DISK_CACHE_DIR);
+        File oldEntry = new File(new File(oldCache, "nested"), "entry");
+        assertTrue(oldEntry.getParentFile().mkdirs() || oldEntry.getParentFile().isDirectory());
+        new FileOutputStream(oldEntry).close();
+
+        assertNotNull(new SunshineGlideModule.ArtCacheFactory(mContext).build());
+        assertFalse("Error: Glide's old default cache is still there", oldCache.exists());
+    }
+}
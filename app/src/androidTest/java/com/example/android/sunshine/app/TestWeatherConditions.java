@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Locale;
+
+/*
+    Checks the weather condition tables in Utility against the if/else chains they replaced, for
+    every id from 0 past the end of the OpenWeatherMap range, and logs how long each takes to
+    look up the whole range.
+ */
+public class TestWeatherConditions extends AndroidTestCase {
+    public static final String LOG_TAG = TestWeatherConditions.class.getSimpleName();
+
+    private static final int LAST_ID = 1200;
+    private static final int BENCHMARK_ROUNDS = 200;
+
+    private String mArtPackKey;
+    private String mSavedArtPack;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mArtPackKey = mContext.getString(R.string.pref_art_pack_key);
+        mSavedArtPack = PreferenceManager.getDefaultSharedPreferences(mContext)
+                .getString(mArtPackKey, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SharedPreferences.Editor editor =
+                PreferenceManager.getDefaultSharedPreferences(mContext).edit();
+        if (mSavedArtPack == null) {
+            editor.remove(mArtPackKey);
+        } else {
+            editor.putString(mArtPackKey, mSavedArtPack);
+        }
+        SunshinePreferences.commit(mContext, editor);
+        super.tearDown();
+    }
+
+    private void setArtPack(int artPackId) {
+        SunshinePreferences.commit(mContext, PreferenceManager.getDefaultSharedPreferences(mContext)
+                .edit()
+                .putString(mArtPackKey, mContext.getString(artPackId)));
+    }
+
+    public void testIconsMatchLegacy() {
+        for (int id = 0; id <= LAST_ID; id++) {
+            assertEquals("Icon for weather id " + id, legacyIcon(id),
+                    Utility.getIconResourceForWeatherCondition(id));
+        }
+    }
+
+    public void testArtMatchesLegacy() {
+        for (int id = 0; id <= LAST_ID; id++) {
+            assertEquals("Art for weather id " + id, legacyArt(id),
+                    Utility.getArtResourceForWeatherCondition(id));
+        }
+    }
+
+    public void testArtUrlsFollowArtPack() {
+        int[] artPacks = {R.string.pref_art_pack_sunshine, R.string.pref_art_pack_cute_dogs,
+                R.string.pref_art_pack_sunshine};
+        for (int artPack : artPacks) {
+            setArtPack(artPack);
+            String format = mContext.getString(artPack);
+            for (int id = 0; id <= LAST_ID; id++) {
+                assertEquals("Art URL for weather id " + id, legacyArtUrl(format, id),
+                        Utility.getArtUrlForWeatherCondition(mContext, id));
+            }
+        }
+    }
+
+    public void testStrings() {
+        assertEquals(mContext.getString(R.string.condition_2xx),
+                Utility.getStringForWeatherCondition(mContext, 211));
+        assertEquals(mContext.getString(R.string.condition_3xx),
+                Utility.getStringForWeatherCondition(mContext, 321));
+        assertEquals(mContext.getString(R.string.condition_761),
+                Utility.getStringForWeatherCondition(mContext, 761));
+        assertEquals(mContext.getString(R.string.condition_962),
+                Utility.getStringForWeatherCondition(mContext, 962));
+        for (int id : new int[] {199, 233, 505, 963, 999, 1000}) {
+            assertEquals("String for weather id " + id,
+                    mContext.getString(R.string.condition_unknown, id),
+                    Utility.getStringForWeatherCondition(mContext, id));
+        }
+    }
+
+    public void testLookupBenchmark() {
+        setArtPack(R.string.pref_art_pack_cute_dogs);
+        String format = mContext.getString(R.string.pref_art_pack_cute_dogs);
+
+        // Warm up both paths, including the URL cache, before timing them.
+        int sink = runLegacy(format, 1) + runTables(1);
+
+        long start = System.nanoTime();
+        sink += runLegacy(format, BENCHMARK_ROUNDS);
+        long legacyNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        sink += runTables(BENCHMARK_ROUNDS);
+        long tableNanos = System.nanoTime() - start;
+
+        int lookups = BENCHMARK_ROUNDS * (LAST_ID + 1);
+        Log.d(LOG_TAG, "Icon, art and art URL for " + lookups + " ids: chains took "
+                + legacyNanos / lookups + "ns per id, tables took " + tableNanos / lookups
+                + "ns per id (" + sink + ")");
+    }
+
+    private int runLegacy(String format, int rounds) {
+        int sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (int id = 0; id <= LAST_ID; id++) {
+                sink += legacyIcon(id) + legacyArt(id);
+                String url = legacyArtUrl(format, id);
+                sink += url == null ? 0 : url.length();
+            }
+        }
+        return sink;
+    }
+
+    private int runTables(int rounds) {
+        int sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (int id = 0; id <= LAST_ID; id++) {
+                sink += Utility.getIconResourceForWeatherCondition(id)
+                        + Utility.getArtResourceForWeatherCondition(id);
+                String url = Utility.getArtUrlForWeatherCondition(mContext, id);
+                sink += url == null ? 0 : url.length();
+            }
+        }
+        return sink;
+    }
+
+    // The chains Utility used before the tables, kept here as the reference.
+    private static String legacyArtName(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return "storm";
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return "light_rain";
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return "rain";
+        } else if (weatherId == 511) {
+            return "snow";
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return "rain";
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return "snow";
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return "fog";
+        } else if (weatherId == 761 || weatherId == 781) {
+            return "storm";
+        } else if (weatherId == 800) {
+            return "clear";
+        } else if (weatherId == 801) {
+            return "light_clouds";
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return "clouds";
+        }
+        return null;
+    }
+
+    private static String legacyArtUrl(String format, int weatherId) {
+        String name = legacyArtName(weatherId);
+        return name == null ? null : String.format(Locale.US, format, name);
+    }
+
+    private static int legacyIcon(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.ic_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.ic_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.ic_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.ic_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.ic_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.ic_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.ic_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.ic_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.ic_cloudy;
+        }
+        return -1;
+    }
+
+    private static int legacyArt(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.art_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.art_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.art_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.art_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.art_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.art_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.art_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.art_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.art_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.art_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.art_clouds;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/*
+    Compares the rows/second of the old per-row SQLiteDatabase#insert loop against the compiled
+    statement paths, for a single sync's worth of rows up to a very large import.
+ */
+public class TestBulkInsertBenchmark extends AndroidTestCase {
+    public static final String LOG_TAG = TestBulkInsertBenchmark.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+    // Large runs are fed to the inserters in chunks of this many rows, inside one outer
+    // transaction, so the ContentValues for 100k rows never have to be in memory at once.
+    private static final int CHUNK_SIZE = 1000;
+
+    private SQLiteDatabase mDb;
+    private long mLocationRowId;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDb = new WeatherDbHelper(mContext).getWritableDatabase();
+        deleteAllRecords();
+        mLocationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        mDb.close();
+        super.tearDown();
+    }
+
+    private void deleteAllRecords() {
+        mDb.delete(WeatherEntry.TABLE_NAME, null, null);
+        mDb.delete(WeatherContract.LocationEntry.TABLE_NAME, null, null);
+    }
+
+    private ContentValues createRow(int i) {
+        ContentValues weatherValues = new ContentValues();
+        weatherValues.put(WeatherEntry.COLUMN_LOC_KEY, mLocationRowId);
+        weatherValues.put(WeatherEntry.COLUMN_DATE, TestUtilities.TEST_DATE + i * DAY_IN_MILLIS);
+        weatherValues.put(WeatherEntry.COLUMN_DEGREES, 1.1);
+        weatherValues.put(WeatherEntry.COLUMN_HUMIDITY, 1.2 + 0.01 * (i % 100));
+        weatherValues.put(WeatherEntry.COLUMN_PRESSURE, 1.3 - 0.01 * (i % 100));
+        weatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, 75 + i % 20);
+        weatherValues.put(WeatherEntry.COLUMN_MIN_TEMP, 65 - i % 20);
+        weatherValues.put(WeatherEntry.COLUMN_SHORT_DESC, "Asteroids");
+        weatherValues.put(WeatherEntry.COLUMN_WIND_SPEED, 5.5 + 0.2 * (i % 10));
+        weatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, 321);
+        return weatherValues;
+    }
+
+    // What WeatherProvider#bulkInsert used to do.
+    private static int legacyInsert(SQLiteDatabase db, ContentValues[] values) {
+        db.beginTransaction();
+        int returnCount = 0;
+        try {
+            for (ContentValues value : values) {
+                value.put(WeatherEntry.COLUMN_DATE,
+                        WeatherContract.normalizeDate(value.getAsLong(WeatherEntry.COLUMN_DATE)));
+                long _id = db.insert(WeatherEntry.TABLE_NAME, null, value);
+                if (_id != -1) {
+                    returnCount++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return returnCount;
+    }
+
+    // Returns rows/second for inserting numRows ContentValues, building them as it goes.
+    private long timeContentValues(int numRows, boolean compiled) {
+        mDb.delete(WeatherEntry.TABLE_NAME, null, null);
+        int inserted = 0;
+        long start = System.nanoTime();
+        mDb.beginTransaction();
+        try {
+            for (int first = 0; first < numRows; first += CHUNK_SIZE) {
+                ContentValues[] chunk = new ContentValues[Math.min(CHUNK_SIZE, numRows - first)];
+                for (int i = 0; i < chunk.length; i++) {
+                    chunk[i] = createRow(first + i);
+                }
+                inserted += compiled
+                        ? WeatherBulkInserter.insert(mDb, chunk)
+                        : legacyInsert(mDb, chunk);
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals(numRows, inserted);
+        assertEquals(numRows, DatabaseUtils.queryNumEntries(mDb, WeatherEntry.TABLE_NAME));
+        return numRows * 1000000000L / Math.max(elapsed, 1);
+    }
+
+    // Returns rows/second for inserting numRows through a columnar batch.
+    private long timeBatch(int numRows) {
+        mDb.delete(WeatherEntry.TABLE_NAME, null, null);
+        long start = System.nanoTime();
+        WeatherBatch batch = new WeatherBatch(numRows);
+        for (int i = 0; i < numRows; i++) {
+            batch.add(mLocationRowId, TestUtilities.TEST_DATE + i * DAY_IN_MILLIS, 321, "Asteroids",
+                    65 - i % 20, 75 + i % 20, 1.2 + 0.01 * (i % 100), 1.3 - 0.01 * (i % 100),
+                    5.5 + 0.2 * (i % 10), 1.1);
+        }
+        int inserted = WeatherBulkInserter.insert(mDb, batch);
+        long elapsed = System.nanoTime() - start;
+        assertEquals(numRows, inserted);
+        return numRows * 1000000000L / Math.max(elapsed, 1);
+    }
+
+    private void benchmark(int numRows) {
+        // Warm up the statement cache and the JIT so the first path measured isn't penalized.
+        timeContentValues(Math.min(numRows, 100), false);
+        timeContentValues(Math.min(numRows, 100), true);
+
+        long legacy = timeContentValues(numRows, false);
+        long compiled = timeContentValues(numRows, true);
+        long batch = timeBatch(numRows);
+        Log.d(LOG_TAG, numRows + " rows: db.insert " + legacy + " rows/s, compiled statement "
+                + compiled + " rows/s, columnar batch " + batch + " rows/s");
+    }
+
+    public void testBenchmark14Rows() {
+        benchmark(14);
+    }
+
+    public void testBenchmark1000Rows() {
+        benchmark(1000);
+    }
+
+    public void testBenchmark100000Rows() {
+        benchmark(100000);
+    }
+
+    public void testBatchMatchesContentValues() {
+        ContentValues[] values = new ContentValues[14];
+        WeatherBatch batch = new WeatherBatch(values.length);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = createRow(i);
+            batch.add(mLocationRowId, values[i].getAsLong(WeatherEntry.COLUMN_DATE),
+                    values[i].getAsInteger(WeatherEntry.COLUMN_WEATHER_ID),
+                    values[i].getAsString(WeatherEntry.COLUMN_SHORT_DESC),
+                    values[i].getAsDouble(WeatherEntry.COLUMN_MIN_TEMP),
+                    values[i].getAsDouble(WeatherEntry.COLUMN_MAX_TEMP),
+                    values[i].getAsDouble(WeatherEntry.COLUMN_HUMIDITY),
+                    values[i].getAsDouble(WeatherEntry.COLUMN_PRESSURE),
+                    values[i].getAsDouble(WeatherEntry.COLUMN_WIND_SPEED),
+                    values[i].getAsDouble(WeatherEntry.COLUMN_DEGREES));
+        }
+
+        assertEquals(values.length, WeatherBulkInserter.insert(mDb, batch));
+        Cursor cursor = mDb.query(WeatherEntry.TABLE_NAME, null, null, null, null, null,
+                WeatherEntry.COLUMN_DATE + " ASC");
+        assertEquals(values.length, cursor.getCount());
+        cursor.moveToFirst();
+        for (int i = 0; i < values.length; i++, cursor.moveToNext()) {
+            TestUtilities.validateCurrentRecord("testBatchMatchesContentValues. Error validating row "
+                    + i, cursor, values[i]);
+        }
+        cursor.close();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.ForecastFragment;
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+    A writer thread repeatedly bulk inserts forecasts while several reader threads run the
+    forecast list's join query, with and without write-ahead logging.  Reports the readers'
+    p50/p99 latency for each.
+ */
+public class TestConcurrentReads extends AndroidTestCase {
+    public static final String LOG_TAG = TestConcurrentReads.class.getSimpleName();
+
+    private static final String ROLLBACK_DATABASE_NAME = "weather_rollback_test.db";
+    private static final String WAL_DATABASE_NAME = "weather_wal_test.db";
+
+    private static final int NUM_READERS = 3;
+    private static final int READS_PER_READER = 200;
+    // Big enough that each write transaction takes a noticeable time.
+    private static final int ROWS_PER_WRITE = 2000;
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(ROLLBACK_DATABASE_NAME);
+        mContext.deleteDatabase(WAL_DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.deleteDatabase(ROLLBACK_DATABASE_NAME);
+        mContext.deleteDatabase(WAL_DATABASE_NAME);
+        super.tearDown();
+    }
+
+    private static ContentValues[] createWeatherValues(long locationId, int firstDay) {
+        ContentValues[] values = new ContentValues[ROWS_PER_WRITE];
+        for (int i = 0; i < values.length; i++) {
+            ContentValues weatherValues = new ContentValues();
+            weatherValues.put(WeatherEntry.COLUMN_LOC_KEY, locationId);
+            weatherValues.put(WeatherEntry.COLUMN_DATE,
+                    TestUtilities.TEST_DATE + (firstDay + i) * DAY_IN_MILLIS);
+            weatherValues.put(WeatherEntry.COLUMN_DEGREES, 1.1);
+            weatherValues.put(WeatherEntry.COLUMN_HUMIDITY, 1.2);
+            weatherValues.put(WeatherEntry.COLUMN_PRESSURE, 1.3);
+            weatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, 75);
+            weatherValues.put(WeatherEntry.COLUMN_MIN_TEMP, 65);
+            weatherValues.put(WeatherEntry.COLUMN_SHORT_DESC, "Asteroids");
+            weatherValues.put(WeatherEntry.COLUMN_WIND_SPEED, 5.5);
+            weatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, 321);
+            values[i] = weatherValues;
+        }
+        return values;
+    }
+
+    /**
+     * @return every read's latency in nanoseconds, sorted.
+     */
+    private long[] runStress(String databaseName, boolean writeAheadLogging) throws Exception {
+        final WeatherDbHelper helper = new WeatherDbHelper(mContext, databaseName, writeAheadLogging);
+        final SQLiteDatabase db = helper.getWritableDatabase();
+        final long locationId = db.insert(LocationEntry.TABLE_NAME, null,
+                TestUtilities.createNorthPoleLocationValues());
+        final String locationSetting = TestUtilities.createNorthPoleLocationValues()
+                .getAsString(LocationEntry.COLUMN_LOCATION_SETTING);
+        WeatherBulkInserter.insert(db, createWeatherValues(locationId, 0));
+
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final long[] latencies = new long[NUM_READERS * READS_PER_READER];
+        final CountDownLatch readersDone = new CountDownLatch(NUM_READERS);
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // Rewrites the same days over and over, like repeated syncs would.
+                while (!done.get()) {
+                    WeatherBulkInserter.insert(db, createWeatherValues(locationId, 0));
+                }
+            }
+        }, "writer");
+        writer.start();
+
+        for (int r = 0; r < NUM_READERS; r++) {
+            final int reader = r;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        String[] args = {locationSetting, Long.toString(TestUtilities.TEST_DATE)};
+                        for (int i = 0; i < READS_PER_READER; i++) {
+                            long start = System.nanoTime();
+                            Cursor cursor = WeatherProvider.sWeatherByLocationSettingQueryBuilder.query(
+                                    db, ForecastFragment.FORECAST_COLUMNS,
+                                    WeatherProvider.sLocationSettingWithStartDateSelection, args,
+                                    null, null, WeatherEntry.COLUMN_DATE + " ASC", "14");
+                            // getCount is what actually runs the query.
+                            cursor.getCount();
+                            cursor.close();
+                            latencies[reader * READS_PER_READER + i] = System.nanoTime() - start;
+                        }
+                    } catch (Throwable t) {
+                        failure.set(t);
+                    } finally {
+                        readersDone.countDown();
+                    }
+                }
+            }, "reader " + r).start();
+        }
+
+        readersDone.await();
+        done.set(true);
+        writer.join();
+        helper.close();
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static long percentileMillis(long[] sorted, int percentile) {
+        int index = Math.min(sorted.length - 1, sorted.length * percentile / 100);
+        return sorted[index] / 1000000;
+    }
+
+    public void testReadLatencyUnderWrites() throws Exception {
+        long[] rollback = runStress(ROLLBACK_DATABASE_NAME, false);
+        long[] wal = runStress(WAL_DATABASE_NAME, true);
+
+        Log.d(LOG_TAG, "Rollback journal: p50 " + percentileMillis(rollback, 50) + " ms, p99 "
+                + percentileMillis(rollback, 99) + " ms");
+        Log.d(LOG_TAG, "Write-ahead log: p50 " + percentileMillis(wal, 50) + " ms, p99 "
+                + percentileMillis(wal, 99) + " ms");
+        // Latencies depend too much on the device to assert on; that every read completed
+        // while the writer was running is checked in runStress.
+
+    }
+
+    public void testCheckpoint() {
+        WeatherDbHelper helper = new WeatherDbHelper(mContext, WAL_DATABASE_NAME, true);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long locationId = db.insert(LocationEntry.TABLE_NAME, null,
+                TestUtilities.createNorthPoleLocationValues());
+        WeatherBulkInserter.insert(db, createWeatherValues(locationId, 0));
+
+        assertTrue("Error: nothing was checkpointed after a write", helper.checkpoint() > 0);
+        helper.close();
+
+        WeatherDbHelper rollbackHelper = new WeatherDbHelper(mContext, ROLLBACK_DATABASE_NAME, false);
+        assertEquals(-1, rollbackHelper.checkpoint());
+        rollbackHelper.close();
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.io.File;
+
+/*
+    Builds databases the way older versions of the app left them, fills them with forecasts and
+    checks that opening them with the current WeatherDbHelper keeps every row.
+ */
+public class TestDbMigrations extends AndroidTestCase {
+    public static final String LOG_TAG = TestDbMigrations.class.getSimpleName();
+
+    private static final String TEST_DATABASE_NAME = "weather_migration_test.db";
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    // The schema as it shipped at version 2.  Never edit this: it's history.
+    private static final String[] SCHEMA_VERSION_2 = {
+            "CREATE TABLE location (_id INTEGER PRIMARY KEY,location_setting TEXT UNIQUE NOT NULL, " +
+                    "city_name TEXT NOT NULL, coord_lat REAL NOT NULL, coord_long REAL NOT NULL  );",
+            "CREATE TABLE weather (_id INTEGER PRIMARY KEY AUTOINCREMENT,location_id INTEGER NOT NULL, " +
+                    "date INTEGER NOT NULL, short_desc TEXT NOT NULL, weather_id INTEGER NOT NULL," +
+                    "min REAL NOT NULL, max REAL NOT NULL, humidity REAL NOT NULL, " +
+                    "pressure REAL NOT NULL, wind REAL NOT NULL, degrees REAL NOT NULL, " +
+                    " FOREIGN KEY (location_id) REFERENCES location (_id),  " +
+                    "UNIQUE (date, location_id) ON CONFLICT REPLACE);"
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(TEST_DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.deleteDatabase(TEST_DATABASE_NAME);
+        super.tearDown();
+    }
+
+    // Creates the test database at the given historical version, with numRows days of weather
+    // for one location.
+    private void createDatabase(int version, String[] schema, int numRows) {
+        File path = mContext.getDatabasePath(TEST_DATABASE_NAME);
+        path.getParentFile().mkdirs();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(path, null);
+        try {
+            for (String sql : schema) {
+                db.execSQL(sql);
+            }
+            db.setVersion(version);
+            if (numRows == 0) {
+                return;
+            }
+
+            db.beginTransaction();
+            try {
+                long locationId = db.insert(LocationEntry.TABLE_NAME, null,
+                        TestUtilities.createNorthPoleLocationValues());
+                SQLiteStatement insert = db.compileStatement("INSERT INTO weather (location_id, " +
+                        "date, short_desc, weather_id, min, max, humidity, pressure, wind, degrees) " +
+                        "VALUES (?, ?, 'Asteroids', 321, ?, ?, 1.2, 1.3, 5.5, 1.1)");
+                for (int i = 0; i < numRows; i++) {
+                    insert.bindLong(1, locationId);
+                    insert.bindLong(2, TestUtilities.TEST_DATE + i * DAY_IN_MILLIS);
+                    insert.bindDouble(3, 65 - i % 20);
+                    insert.bindDouble(4, 75 + i % 20);
+                    insert.executeInsert();
+                }
+                insert.close();
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    private void assertCurrentSchema(SQLiteDatabase db) {
+        assertEquals(WeatherDbHelper.MIGRATIONS.length + WeatherDbHelper.OLDEST_MIGRATABLE_VERSION,
+                db.getVersion());
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type='index' AND name=?",
+                new String[]{WeatherDbHelper.WEATHER_LOCATION_DATE_INDEX});
+        assertTrue("Error: migration didn't create " + WeatherDbHelper.WEATHER_LOCATION_DATE_INDEX,
+                cursor.moveToFirst());
+        cursor.close();
+    }
+
+    public void testMigrationsCoverEveryVersion() {
+        for (int i = 0; i < WeatherDbHelper.MIGRATIONS.length; i++) {
+            assertEquals("Error: migrations must be in order with no gaps",
+                    WeatherDbHelper.OLDEST_MIGRATABLE_VERSION + i,
+                    WeatherDbHelper.MIGRATIONS[i].fromVersion);
+        }
+    }
+
+    public void testUpgradeFromVersion2KeepsForecasts() {
+        createDatabase(2, SCHEMA_VERSION_2, 14);
+
+        WeatherDbHelper helper = new WeatherDbHelper(mContext, TEST_DATABASE_NAME);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        assertCurrentSchema(db);
+        assertEquals("Error: cached forecasts were lost in the upgrade",
+                14, DatabaseUtils.queryNumEntries(db, WeatherEntry.TABLE_NAME));
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, LocationEntry.TABLE_NAME));
+
+        // The ON CONFLICT REPLACE constraint has to survive, the sync relies on it.
+        Cursor cursor = db.query(WeatherEntry.TABLE_NAME, null, null, null, null, null,
+                WeatherEntry.COLUMN_DATE + " ASC", "1");
+        cursor.moveToFirst();
+        ContentValues duplicate = new ContentValues();
+        DatabaseUtils.cursorRowToContentValues(cursor, duplicate);
+        cursor.close();
+        duplicate.remove(WeatherEntry._ID);
+        duplicate.put(WeatherEntry.COLUMN_SHORT_DESC, "Meteors");
+        assertTrue(db.insert(WeatherEntry.TABLE_NAME, null, duplicate) != -1);
+        assertEquals(14, DatabaseUtils.queryNumEntries(db, WeatherEntry.TABLE_NAME));
+        helper.close();
+    }
+
+    public void testUpgradeFromUnknownVersionRecreates() {
+        // Version 1 predates any schema we have on record, so it's rebuilt empty.
+        createDatabase(1, new String[]{"CREATE TABLE weather (_id INTEGER PRIMARY KEY, date TEXT);"}, 0);
+
+        WeatherDbHelper helper = new WeatherDbHelper(mContext, TEST_DATABASE_NAME);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        assertCurrentSchema(db);
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, WeatherEntry.TABLE_NAME));
+        helper.close();
+    }
+
+    // Rebuilds the location table with an extra column, the way a real migration would.
+    private static void rebuildLocationTable(SQLiteDatabase db) {
+        WeatherDbMigration migration = new WeatherDbMigration(2) {
+            @Override
+            void migrate(SQLiteDatabase db) {
+                addColumn(db, LocationEntry.TABLE_NAME, "time_zone TEXT");
+                rebuildTable(db, LocationEntry.TABLE_NAME,
+                        "(_id INTEGER PRIMARY KEY, " +
+                                "location_setting TEXT UNIQUE NOT NULL, city_name TEXT NOT NULL, " +
+                                "coord_lat REAL NOT NULL, coord_long REAL NOT NULL, time_zone TEXT)",
+                        LocationEntry._ID, LocationEntry.COLUMN_LOCATION_SETTING,
+                        LocationEntry.COLUMN_CITY_NAME, LocationEntry.COLUMN_COORD_LAT,
+                        LocationEntry.COLUMN_COORD_LONG, "time_zone");
+            }
+        };
+        migration.apply(db);
+    }
+
+    public void testRebuildTableKeepsRows() {
+        createDatabase(2, SCHEMA_VERSION_2, 100);
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(
+                mContext.getDatabasePath(TEST_DATABASE_NAME).getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE);
+        try {
+            rebuildLocationTable(db);
+
+            Cursor cursor = db.query(LocationEntry.TABLE_NAME, null, null, null, null, null, null);
+            assertTrue(cursor.moveToFirst());
+            TestUtilities.validateCurrentRecord("testRebuildTableKeepsRows. Error validating location",
+                    cursor, TestUtilities.createNorthPoleLocationValues());
+            assertTrue(cursor.getColumnIndex("time_zone") != -1);
+            cursor.close();
+            assertEquals(100, DatabaseUtils.queryNumEntries(db, WeatherEntry.TABLE_NAME));
+        } finally {
+            db.close();
+        }
+    }
+
+    public void testRebuildTableKeepsForeignKeys() {
+        createDatabase(2, SCHEMA_VERSION_2, 100);
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(
+                mContext.getDatabasePath(TEST_DATABASE_NAME).getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE);
+        try {
+            rebuildLocationTable(db);
+
+            Cursor cursor = db.rawQuery("PRAGMA foreign_key_list(" + WeatherEntry.TABLE_NAME + ")",
+                    null);
+            assertTrue("Error: weather lost its foreign key", cursor.moveToFirst());
+            assertEquals("Error: weather's foreign key should still point at the location table",
+                    LocationEntry.TABLE_NAME, cursor.getString(cursor.getColumnIndex("table")));
+            assertEquals(WeatherEntry.COLUMN_LOC_KEY,
+                    cursor.getString(cursor.getColumnIndex("from")));
+            cursor.close();
+
+            cursor = db.rawQuery("PRAGMA foreign_key_check(" + WeatherEntry.TABLE_NAME + ")", null);
+            assertEquals("Error: weather rows reference locations that don't exist",
+                    0, cursor.getCount());
+            cursor.close();
+        } finally {
+            db.close();
+        }
+    }
+
+    public void testUpgradeTiming100kRows() {
+        createDatabase(2, SCHEMA_VERSION_2, 100000);
+
+        long start = System.nanoTime();
+        WeatherDbHelper helper = new WeatherDbHelper(mContext, TEST_DATABASE_NAME);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        Log.d(LOG_TAG, "Upgraded a 100000 row database in " + elapsedMillis + " ms");
+
+        assertCurrentSchema(db);
+        assertEquals(100000, DatabaseUtils.queryNumEntries(db, WeatherEntry.TABLE_NAME));
+        helper.close();
+    }
+}
@@ -24,6 +24,7 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Bundle;
 import android.test.AndroidTestCase;
 import android.util.Log;
 
@@ -512,4 +513,134 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    private Bundle upsertWeather(ContentValues[] values) {
+        Bundle extras = new Bundle();
+        extras.putParcelableArray(WeatherEntry.EXTRA_WEATHER_VALUES, values);
+        return mContext.getContentResolver().call(WeatherEntry.CONTENT_URI,
+                WeatherEntry.METHOD_UPSERT, null, extras);
+    }
+
+    private void assertUpsertCounts(Bundle counts, int inserted, int updated, int unchanged) {
+        assertEquals("Error: wrong number of rows inserted",
+                inserted, counts.getInt(WeatherEntry.RESULT_ROWS_INSERTED));
+        assertEquals("Error: wrong number of rows updated",
+                updated, counts.getInt(WeatherEntry.RESULT_ROWS_UPDATED));
+        assertEquals("Error: wrong number of rows left unchanged",
+                unchanged, counts.getInt(WeatherEntry.RESULT_ROWS_UNCHANGED));
+    }
+
+    public void testUpsertWeather() throws Exception {
+        long locationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+
+        // Fresh rows are all inserted.
+        assertUpsertCounts(upsertWeather(createBulkInsertWeatherValues(locationRowId)),
+                BULK_INSERT_RECORDS_TO_INSERT, 0, 0);
+
+        // Writing the same forecast again touches nothing, and tells nobody.
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(WeatherEntry.CONTENT_URI, true, weatherObserver);
+        assertUpsertCounts(upsertWeather(createBulkInsertWeatherValues(locationRowId)),
+                0, 0, BULK_INSERT_RECORDS_TO_INSERT);
+        Thread.sleep(500);
+        assertFalse("Error: an unchanged upsert should not notify observers",
+                weatherObserver.mContentChanged);
+
+        // Change one day; only that row is rewritten, and observers hear about it.
+        ContentValues[] values = createBulkInsertWeatherValues(locationRowId);
+        values[3].put(WeatherEntry.COLUMN_MAX_TEMP, 99.5);
+        assertUpsertCounts(upsertWeather(values), 0, 1, BULK_INSERT_RECORDS_TO_INSERT - 1);
+        weatherObserver.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(weatherObserver);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                WeatherEntry.COLUMN_DATE + " ASC"
+        );
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        cursor.moveToPosition(3);
+        TestUtilities.validateCurrentRecord("testUpsertWeather. Error validating updated row",
+                cursor, values[3]);
+        cursor.close();
+    }
+
+    private int[] queryCacheStats() {
+        Bundle stats = mContext.getContentResolver().call(WeatherEntry.CONTENT_URI,
+                WeatherEntry.METHOD_QUERY_CACHE_STATS, null, null);
+        return new int[]{stats.getInt(WeatherEntry.RESULT_CACHE_HITS),
+                stats.getInt(WeatherEntry.RESULT_CACHE_MISSES)};
+    }
+
+    // Queries the forecast from TEST_DATE and asserts whether it came out of the provider's
+    // cache, returning its rows sorted by date.
+    private Cursor queryForecast(String locationSetting, boolean expectHit) {
+        int[] before = queryCacheStats();
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocationWithStartDate(locationSetting, TestUtilities.TEST_DATE),
+                null,
+                null,
+                null,
+                WeatherEntry.COLUMN_DATE + " ASC"
+        );
+        int[] after = queryCacheStats();
+        assertEquals("Error: expected a cache " + (expectHit ? "hit" : "miss") + " for "
+                + locationSetting, expectHit ? 1 : 0, after[0] - before[0]);
+        assertEquals(expectHit ? 0 : 1, after[1] - before[1]);
+        return cursor;
+    }
+
+    public void testQueryCache() {
+        ContentValues northPole = TestUtilities.createNorthPoleLocationValues();
+        String northPoleSetting = northPole.getAsString(LocationEntry.COLUMN_LOCATION_SETTING);
+        long northPoleId = ContentUris.parseId(
+                mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, northPole));
+        ContentValues southPole = new ContentValues(northPole);
+        String southPoleSetting = "Amundsen-Scott";
+        southPole.put(LocationEntry.COLUMN_LOCATION_SETTING, southPoleSetting);
+        southPole.put(LocationEntry.COLUMN_COORD_LAT, -90.0);
+        long southPoleId = ContentUris.parseId(
+                mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, southPole));
+
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                createBulkInsertWeatherValues(northPoleId));
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                createBulkInsertWeatherValues(southPoleId));
+
+        // The second time round the same query is answered from memory, with the same rows.
+        queryForecast(northPoleSetting, false).close();
+        Cursor cursor = queryForecast(northPoleSetting, true);
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        cursor.moveToFirst();
+        TestUtilities.validateCurrentRecord("testQueryCache. Error validating cached row",
+                cursor, createBulkInsertWeatherValues(northPoleId)[0]);
+        cursor.close();
+        queryForecast(southPoleSetting, false).close();
+
+        // A sync that changes nothing leaves the cache alone.
+        upsertWeather(createBulkInsertWeatherValues(northPoleId));
+        queryForecast(northPoleSetting, true).close();
+
+        // Changing one location's forecast only drops that location's results.
+        ContentValues[] values = createBulkInsertWeatherValues(northPoleId);
+        values[0].put(WeatherEntry.COLUMN_MAX_TEMP, 99.5);
+        upsertWeather(values);
+        queryForecast(southPoleSetting, true).close();
+        cursor = queryForecast(northPoleSetting, false);
+        cursor.moveToFirst();
+        TestUtilities.validateCurrentRecord("testQueryCache. Error validating updated row",
+                cursor, values[0]);
+        cursor.close();
+
+        // So does deleting through an arbitrary selection.
+        queryForecast(northPoleSetting, true).close();
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI,
+                WeatherEntry.COLUMN_LOC_KEY + " = ?", new String[]{Long.toString(southPoleId)});
+        queryForecast(northPoleSetting, true).close();
+        cursor = queryForecast(southPoleSetting, false);
+        assertEquals(0, cursor.getCount());
+        cursor.close();
+    }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.ForecastFragment;
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/*
+    Runs EXPLAIN QUERY PLAN over every query shape WeatherProvider and the sync issue, and fails
+    if any of them has to scan a whole table or build a temporary B-tree to sort.
+ */
+public class TestQueryPlans extends AndroidTestCase {
+    public static final String LOG_TAG = TestQueryPlans.class.getSimpleName();
+
+    private static final String TEST_LOCATION = "99705";
+    private static final String TEST_DATE = Long.toString(TestUtilities.TEST_DATE);
+    private static final String SORT_BY_DATE = WeatherEntry.COLUMN_DATE + " ASC";
+
+    // Same columns as DetailFragment asks for.
+    private static final String[] DETAIL_COLUMNS = {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            LocationEntry.COLUMN_LOCATION_SETTING
+    };
+
+    private SQLiteDatabase mDb;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDb = new WeatherDbHelper(mContext).getReadableDatabase();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDb.close();
+        super.tearDown();
+    }
+
+    private void assertIndexedPlan(String description, String sql, String[] args) {
+        Cursor cursor = mDb.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        int detailIndex = cursor.getColumnIndex("detail");
+        assertTrue("Error: no query plan for " + description, cursor.moveToFirst());
+        do {
+            String detail = cursor.getString(detailIndex);
+            Log.d(LOG_TAG, description + ": " + detail);
+            assertFalse("Error: " + description + " scans a whole table: " + detail,
+                    detail.startsWith("SCAN"));
+            assertFalse("Error: " + description + " sorts in a temp B-tree: " + detail,
+                    detail.contains("TEMP B-TREE"));
+        } while (cursor.moveToNext());
+        cursor.close();
+    }
+
+    private void assertIndexedJoin(String description, String[] projection, String selection,
+                                   String[] args, String sortOrder) {
+        String sql = WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(
+                projection, selection, null, null, sortOrder, null);
+        assertIndexedPlan(description, sql, args);
+    }
+
+    public void testCoveringIndexExists() {
+        Cursor cursor = mDb.rawQuery("SELECT name FROM sqlite_master WHERE type='index' AND name=?",
+                new String[]{WeatherDbHelper.WEATHER_LOCATION_DATE_INDEX});
+        assertTrue("Error: " + WeatherDbHelper.WEATHER_LOCATION_DATE_INDEX + " was not created",
+                cursor.moveToFirst());
+        cursor.close();
+    }
+
+    public void testWeatherWithLocationPlans() {
+        // content://.../weather/<location>
+        assertIndexedJoin("weather by location", ForecastFragment.FORECAST_COLUMNS,
+                WeatherProvider.sLocationSettingSelection, new String[]{TEST_LOCATION},
+                SORT_BY_DATE);
+        // content://.../weather/<location>?date=<start>, the list, widget, wear and sync check
+        assertIndexedJoin("weather by location from date", ForecastFragment.FORECAST_COLUMNS,
+                WeatherProvider.sLocationSettingWithStartDateSelection,
+                new String[]{TEST_LOCATION, TEST_DATE}, SORT_BY_DATE);
+    }
+
+    public void testWeatherWithLocationAndDatePlans() {
+        // content://.../weather/<location>/<date>, the detail screen and the notification
+        assertIndexedJoin("weather by location and day", DETAIL_COLUMNS,
+                WeatherProvider.sLocationSettingAndDaySelection,
+                new String[]{TEST_LOCATION, TEST_DATE}, null);
+    }
+
+    public void testSyncWritePlans() {
+        // The upsert's lookup of the stored row for an incoming one.
+        assertIndexedPlan("upsert lookup",
+                "SELECT * FROM " + WeatherEntry.TABLE_NAME + " WHERE "
+                        + WeatherProvider.sDateAndLocationIdSelection,
+                new String[]{TEST_DATE, "1"});
+        // ForecastSyncEngine#deleteOldForecasts pruning every location's old days, which
+        // searches the UNIQUE (date, location_id) index.
+        assertIndexedPlan("prune old days",
+                "DELETE FROM " + WeatherEntry.TABLE_NAME + " WHERE "
+                        + WeatherEntry.COLUMN_DATE + " <= ?",
+                new String[]{TEST_DATE});
+        // ForecastSyncEngine#addLocation looking up an existing location.
+        assertIndexedPlan("location by setting",
+                "SELECT " + LocationEntry._ID + " FROM " + LocationEntry.TABLE_NAME + " WHERE "
+                        + LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{TEST_LOCATION});
+    }
+}
@@ -19,12 +19,14 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.ContentObserver;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.test.AndroidTestCase;
 
+import com.example.android.sunshine.app.ForecastFragment;
 import com.example.android.sunshine.app.utils.PollingCheck;
 
 import java.util.Map;
@@ -58,6 +60,23 @@ public class TestUtilities extends AndroidTestCase {
         }
     }
 
+    /*
+        An empty cursor with the columns ForecastFragment loads, for tests that feed the forecast
+        list without a database.
+     */
+    public static MatrixCursor createForecastCursor() {
+        return new MatrixCursor(ForecastFragment.FORECAST_COLUMNS);
+    }
+
+    /*
+        Adds a clear day in Mountain View to a cursor from createForecastCursor.
+     */
+    public static void addForecastRow(MatrixCursor cursor, long id, long date, double high,
+            double low, int weatherId) {
+        cursor.addRow(new Object[] {id, date, "Clear", high, low, "94043", weatherId, 37.4,
+                -122.1});
+    }
+
     /*
         Students: Use this to create some default weather values for your database tests.
      */
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.utils.StubHttpServer;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+
+/*
+    Runs repeated "syncs" against a local stub server and checks that an unchanged forecast is
+    only transferred and written once.
+ */
+public class TestForecastDownloader extends AndroidTestCase {
+    private static final String TEST_LOCATION = "94043";
+
+    private StubHttpServer mServer;
+    private File mCacheDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new StubHttpServer();
+        mCacheDir = new File(mContext.getCacheDir(), "test_forecast");
+        deleteCacheDir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.shutdown();
+        deleteCacheDir();
+        super.tearDown();
+    }
+
+    private void deleteCacheDir() {
+        File[] files = mCacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mCacheDir.delete();
+    }
+
+    // Mirrors what the sync adapter does with a response; returns the number of rows it would
+    // have written.
+    private int sync(ForecastDownloader downloader, URL url) throws Exception {
+        ForecastDownloader.Response response = downloader.fetch(url, TEST_LOCATION);
+        if (response.isNotModified()) {
+            return 0;
+        }
+        try {
+            InputStream body = response.openBody();
+            OwmForecastParser.Forecast forecast = OwmForecastParser.parse(body);
+            body.close();
+            response.commit();
+            return forecast.days.size();
+        } finally {
+            response.close();
+        }
+    }
+
+    public void testRepeatedSyncsOnlyTransferOnce() throws Exception {
+        byte[] body = TestOwmForecastParser.createForecastJson(14).getBytes("UTF-8");
+        mServer.setResponse(body, "\"v1\"");
+        URL url = mServer.getUrl("/data/2.5/forecast/daily?q=" + TEST_LOCATION);
+
+        ForecastDownloader downloader = new ForecastDownloader(
+                new ForecastResponseCache(mCacheDir, 64 * 1024));
+
+        int rowsWritten = 0;
+        for (int i = 0; i < 5; i++) {
+            rowsWritten += sync(downloader, url);
+        }
+
+        assertEquals("Error: every sync should have reached the server", 5, mServer.getRequestCount());
+        assertEquals("Error: unchanged forecast should have been answered with 304s",
+                4, mServer.getNotModifiedCount());
+        assertEquals("Error: the body should have been transferred exactly once",
+                body.length, mServer.getBodyBytesSent());
+        assertEquals("Error: rows should only have been written for the first sync", 14, rowsWritten);
+
+        // Once the forecast changes upstream, the next sync picks it up.
+        byte[] newBody = TestOwmForecastParser.createForecastJson(16).getBytes("UTF-8");
+        mServer.setResponse(newBody, "\"v2\"");
+        assertEquals(16, sync(downloader, url));
+        assertEquals(0, sync(downloader, url));
+        assertEquals(body.length + newBody.length, mServer.getBodyBytesSent());
+    }
+
+    public void testNotModifiedServesCachedBody() throws Exception {
+        byte[] body = TestOwmForecastParser.createForecastJson(14).getBytes("UTF-8");
+        mServer.setResponse(body, "\"v1\"");
+        URL url = mServer.getUrl("/data/2.5/forecast/daily?q=" + TEST_LOCATION);
+        ForecastDownloader downloader = new ForecastDownloader(
+                new ForecastResponseCache(mCacheDir, 64 * 1024));
+
+        sync(downloader, url);
+        ForecastDownloader.Response response = downloader.fetch(url, TEST_LOCATION);
+        assertTrue(response.isNotModified());
+        assertEquals(0, response.getBytesOnWire());
+        assertEquals(0, response.getBytesReceived());
+
+        InputStream cached = response.openBody();
+        OwmForecastParser.Forecast forecast = OwmForecastParser.parse(cached);
+        cached.close();
+        assertEquals(14, forecast.days.size());
+    }
+
+    public void testGzipTransfer() throws Exception {
+        byte[] body = TestOwmForecastParser.createForecastJson(16).getBytes("UTF-8");
+        mServer.setResponse(body, "\"v1\"");
+        mServer.setGzipEnabled(true);
+        URL url = mServer.getUrl("/data/2.5/forecast/daily?q=" + TEST_LOCATION);
+        ForecastDownloader downloader = new ForecastDownloader(
+                new ForecastResponseCache(mCacheDir, 64 * 1024));
+
+        ForecastDownloader.Response response = downloader.fetch(url, TEST_LOCATION);
+        try {
+            assertEquals(body.length, response.getBytesReceived());
+            assertEquals(mServer.getBodyBytesSent(), response.getBytesOnWire());
+            assertTrue("Error: compressed body should be smaller than the decoded one",
+                    response.getBytesOnWire() < response.getBytesReceived());
+
+            InputStream decoded = response.openBody();
+            assertEquals(16, OwmForecastParser.parse(decoded).days.size());
+            decoded.close();
+        } finally {
+            response.close();
+        }
+    }
+
+    public void testCacheEvictsLeastRecentlyUsed() throws Exception {
+        ForecastResponseCache cache = new ForecastResponseCache(mCacheDir, 2500);
+        byte[] body = new byte[1000];
+
+        cache.put("a", "\"a\"", null, body, 0, body.length);
+        cache.put("b", "\"b\"", null, body, 0, body.length);
+        // Make sure "a" is the more recently used of the two before we go over the limit.
+        Thread.sleep(1100);
+        assertNotNull(cache.get("a"));
+        cache.put("c", "\"c\"", null, body, 0, body.length);
+
+        assertTrue("Error: cache grew past its limit", cache.size() <= 2500);
+        assertNotNull(cache.get("a"));
+        assertNull("Error: least recently used entry should have been evicted", cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals("\"c\"", cache.get("c").eTag);
+    }
+}
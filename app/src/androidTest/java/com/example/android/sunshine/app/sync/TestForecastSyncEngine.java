@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.utils.StubHttpServer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Syncs several locations against a local stub server that answers slowly, and checks that
+    the wall-clock time is governed by the pool size rather than by the number of locations.
+ */
+public class TestForecastSyncEngine extends AndroidTestCase {
+    public static final String LOG_TAG = TestForecastSyncEngine.class.getSimpleName();
+
+    private static final int NUM_LOCATIONS = 8;
+    private static final long LATENCY_MILLIS = 250;
+
+    private StubHttpServer mServer;
+    private File mCacheDir;
+    private List<String> mLocations;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new StubHttpServer();
+        // No ETag, so every request is answered with a full body.
+        mServer.setResponse(TestOwmForecastParser.createForecastJson(14).getBytes("UTF-8"), null);
+        mServer.setLatencyMillis(LATENCY_MILLIS);
+        mCacheDir = new File(mContext.getCacheDir(), "test_forecast_engine");
+
+        mLocations = new ArrayList<String>(NUM_LOCATIONS);
+        for (int i = 0; i < NUM_LOCATIONS; i++) {
+            mLocations.add("test-location-" + i);
+        }
+        deleteAllRecords();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.shutdown();
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+
+        File[] files = mCacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mCacheDir.delete();
+    }
+
+    private ForecastSyncEngine createEngine(int poolSize) throws Exception {
+        ForecastDownloader downloader = new ForecastDownloader(
+                new ForecastResponseCache(mCacheDir, 256 * 1024));
+        return new ForecastSyncEngine(mContext, downloader,
+                mServer.getUrl("/data/2.5/forecast/daily?").toString(), poolSize);
+    }
+
+    // Returns how long syncing every location took, in milliseconds.
+    private long timeSyncAll(int poolSize) throws Exception {
+        ForecastSyncEngine engine = createEngine(poolSize);
+        try {
+            long start = System.nanoTime();
+            Map<String, ForecastSyncEngine.Result> results = engine.syncAll(mLocations);
+            long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+            assertEquals(NUM_LOCATIONS, results.size());
+            for (String location : mLocations) {
+                ForecastSyncEngine.Result result = results.get(location);
+                assertEquals("Error: " + location + " did not sync",
+                        SunshineSyncAdapter.LOCATION_STATUS_OK, result.status);
+                assertEquals(14, result.rowsWritten);
+            }
+            Log.d(LOG_TAG, NUM_LOCATIONS + " locations, pool of " + poolSize + ": "
+                    + elapsedMillis + " ms");
+            return elapsedMillis;
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    public void testEachLocationGetsItsOwnRowsAndStatus() throws Exception {
+        ForecastSyncEngine engine = createEngine(4);
+        try {
+            engine.syncAll(mLocations);
+        } finally {
+            engine.shutdown();
+        }
+
+        for (String location : mLocations) {
+            Cursor cursor = mContext.getContentResolver().query(
+                    WeatherContract.WeatherEntry.buildWeatherLocation(location),
+                    null, null, null, null);
+            assertEquals("Error: wrong number of rows for " + location, 14, cursor.getCount());
+            cursor.close();
+
+            assertEquals(SunshineSyncAdapter.LOCATION_STATUS_OK,
+                    Utility.getLocationStatus(mContext, location));
+        }
+    }
+
+    public void testFailedLocationDoesNotAffectOthers() throws Exception {
+        // An OWM "city not found" response for one location; the rest get a forecast.
+        String failing = mLocations.get(1);
+        mServer.setResponseFor("q=" + failing + "&",
+                "{\"cod\":\"404\",\"message\":\"Error: Not found city\"}".getBytes("UTF-8"));
+        mServer.setLatencyMillis(0);
+        List<String> locations = mLocations.subList(0, 4);
+        ForecastSyncEngine engine = createEngine(2);
+        try {
+            Map<String, ForecastSyncEngine.Result> results = engine.syncAll(locations);
+            assertEquals(locations.size(), results.size());
+            for (String location : locations) {
+                ForecastSyncEngine.Result result = results.get(location);
+                Cursor cursor = mContext.getContentResolver().query(
+                        WeatherContract.WeatherEntry.buildWeatherLocation(location),
+                        null, null, null, null);
+                int rowCount = cursor.getCount();
+                cursor.close();
+
+                if (location.equals(failing)) {
+                    assertEquals(SunshineSyncAdapter.LOCATION_STATUS_INVALID, result.status);
+                    assertEquals(0, result.rowsWritten);
+                    assertEquals("Error: the failed location should have no rows", 0, rowCount);
+                } else {
+                    assertEquals("Error: " + location + " did not sync",
+                            SunshineSyncAdapter.LOCATION_STATUS_OK, result.status);
+                    assertEquals(14, result.rowsWritten);
+                    assertEquals("Error: wrong number of rows for " + location, 14, rowCount);
+                }
+                assertEquals(result.status,
+                        Utility.getLocationStatus(mContext, result.locationSetting));
+            }
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    public void testPastDaysDeletedForEveryLocation() throws Exception {
+        mServer.setLatencyMillis(0);
+        ForecastSyncEngine engine = createEngine(2);
+        try {
+            // A location that is no longer synced, with a forecast for a day long gone.
+            long untrackedId = engine.addLocation("test-untracked", "Nowhere", 0, 0);
+            ContentValues oldDay = new ContentValues();
+            oldDay.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, untrackedId);
+            oldDay.put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    System.currentTimeMillis() - 7 * DateUtils.DAY_IN_MILLIS);
+            oldDay.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, 1.1);
+            oldDay.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 1.2);
+            oldDay.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1.3);
+            oldDay.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 75);
+            oldDay.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, 65);
+            oldDay.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, "Asteroids");
+            oldDay.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 5.5);
+            oldDay.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, 321);
+            mContext.getContentResolver().insert(WeatherContract.WeatherEntry.CONTENT_URI, oldDay);
+
+            engine.syncAll(mLocations.subList(0, 2));
+        } finally {
+            engine.shutdown();
+        }
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocation("test-untracked"),
+                null, null, null, null);
+        assertEquals("Error: past days of a location that isn't synced should be deleted",
+                0, cursor.getCount());
+        cursor.close();
+    }
+
+    public void testBenchmarkPoolSize() throws Exception {
+        long serial = timeSyncAll(1);
+        deleteAllRecords();
+        long twoThreads = timeSyncAll(2);
+        deleteAllRecords();
+        long fourThreads = timeSyncAll(4);
+
+        // With one thread the latency of every location adds up.
+        assertTrue("Error: serial sync finished faster than its latency allows",
+                serial >= NUM_LOCATIONS * LATENCY_MILLIS);
+        // With more threads it is divided by the pool size; allow generous slack for the
+        // parsing and database work, which doesn't parallelize as well.
+        assertTrue("Error: a pool of 2 should roughly halve the sync time, took "
+                + twoThreads + " ms vs " + serial + " ms", twoThreads < serial * 3 / 4);
+        assertTrue("Error: a pool of 4 should beat a pool of 2, took "
+                + fourThreads + " ms vs " + twoThreads + " ms", fourThreads < twoThreads);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/*
+    Checks that the streaming parser reads the same rows as the old JSONObject based code, and
+    logs how the two compare in time and allocations for 14 and 16 day responses.
+ */
+public class TestOwmForecastParser extends AndroidTestCase {
+    public static final String LOG_TAG = TestOwmForecastParser.class.getSimpleName();
+
+    private static final int BENCHMARK_ITERATIONS = 200;
+
+    // Builds a response shaped exactly like the one OWM's daily forecast endpoint returns.
+    static String createForecastJson(int numDays) {
+        StringBuilder sb = new StringBuilder(512 * numDays);
+        sb.append("{\"city\":{\"id\":5375480,\"name\":\"Mountain View\",")
+                .append("\"coord\":{\"lon\":-122.083847,\"lat\":37.386051},")
+                .append("\"country\":\"US\",\"population\":0},")
+                .append("\"cod\":\"200\",\"message\":0.0123,\"cnt\":").append(numDays)
+                .append(",\"list\":[");
+        for (int i = 0; i < numDays; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(String.format(Locale.US,
+                    "{\"dt\":%d,\"temp\":{\"day\":%.2f,\"min\":%.2f,\"max\":%.2f,\"night\":%.2f," +
+                            "\"eve\":%.2f,\"morn\":%.2f},\"pressure\":%.2f,\"humidity\":%d," +
+                            "\"weather\":[{\"id\":%d,\"main\":\"Clear\",\"description\":\"sky is clear\"," +
+                            "\"icon\":\"01d\"}],\"speed\":%.2f,\"deg\":%d,\"clouds\":0}",
+                    1419033600L + i * 86400L, 18.5 + i, 10.25 + i, 22.75 + i, 12.0, 17.0, 11.0,
+                    1012.5 + i, 40 + i, 800 + (i % 5), 1.5 + i, 10 * i));
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    // The parsing code the sync adapter used before it switched to the streaming parser.
+    static ArrayList<ContentValues> parseWithJsonObject(String forecastJsonStr) throws JSONException {
+        JSONObject forecastJson = new JSONObject(forecastJsonStr);
+        JSONArray weatherArray = forecastJson.getJSONArray("list");
+        forecastJson.getJSONObject("city").getString("name");
+
+        ArrayList<ContentValues> days = new ArrayList<ContentValues>(weatherArray.length());
+        for (int i = 0; i < weatherArray.length(); i++) {
+            JSONObject dayForecast = weatherArray.getJSONObject(i);
+            JSONObject weatherObject = dayForecast.getJSONArray("weather").getJSONObject(0);
+            JSONObject temperatureObject = dayForecast.getJSONObject("temp");
+
+            ContentValues weatherValues = new ContentValues();
+            weatherValues.put(WeatherEntry.COLUMN_HUMIDITY, dayForecast.getInt("humidity"));
+            weatherValues.put(WeatherEntry.COLUMN_PRESSURE, dayForecast.getDouble("pressure"));
+            weatherValues.put(WeatherEntry.COLUMN_WIND_SPEED, dayForecast.getDouble("speed"));
+            weatherValues.put(WeatherEntry.COLUMN_DEGREES, dayForecast.getDouble("deg"));
+            weatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, temperatureObject.getDouble("max"));
+            weatherValues.put(WeatherEntry.COLUMN_MIN_TEMP, temperatureObject.getDouble("min"));
+            weatherValues.put(WeatherEntry.COLUMN_SHORT_DESC, weatherObject.getString("main"));
+            weatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, weatherObject.getInt("id"));
+            days.add(weatherValues);
+        }
+        return days;
+    }
+
+    // The old read loop: one String per line, then one big String for the whole body.
+    static String readLines(byte[] body) throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body)));
+        StringBuffer buffer = new StringBuffer();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            buffer.append(line + "\n");
+        }
+        return buffer.toString();
+    }
+
+    public void testStreamingParserMatchesJsonObject() throws Exception {
+        String json = createForecastJson(16);
+        OwmForecastParser.Forecast forecast =
+                OwmForecastParser.parse(new ByteArrayInputStream(json.getBytes("UTF-8")));
+        ArrayList<ContentValues> expected = parseWithJsonObject(json);
+
+        assertEquals(HttpURLConnection.HTTP_OK, forecast.messageCode);
+        assertEquals("Mountain View", forecast.cityName);
+        assertEquals(37.386051, forecast.cityLatitude, 1e-9);
+        assertEquals(-122.083847, forecast.cityLongitude, 1e-9);
+        assertEquals(expected.size(), forecast.days.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals("Error: day " + i + " differs between parsers",
+                    expected.get(i), forecast.days.get(i));
+        }
+    }
+
+    public void testErrorResponse() throws Exception {
+        String json = "{\"cod\":404,\"message\":\"Error: Not found city\"}";
+        OwmForecastParser.Forecast forecast =
+                OwmForecastParser.parse(new ByteArrayInputStream(json.getBytes("UTF-8")));
+        assertEquals(HttpURLConnection.HTTP_NOT_FOUND, forecast.messageCode);
+        assertEquals(0, forecast.days.size());
+    }
+
+    public void testMalformedResponse() throws Exception {
+        String json = "{\"cod\":\"200\",\"city\":{\"name\":\"X\"},\"list\":[{\"temp\":\"warm\"}]}";
+        try {
+            OwmForecastParser.parse(new ByteArrayInputStream(json.getBytes("UTF-8")));
+            fail("Error: a malformed day should be reported as a JSONException");
+        } catch (JSONException expected) {
+            // expected
+        }
+    }
+
+    public void testBenchmark14Days() throws Exception {
+        benchmark(14);
+    }
+
+    public void testBenchmark16Days() throws Exception {
+        benchmark(16);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void benchmark(int numDays) throws Exception {
+        byte[] body = createForecastJson(numDays).getBytes("UTF-8");
+
+        // warm up both paths so we aren't timing class loading
+        for (int i = 0; i < 20; i++) {
+            parseWithJsonObject(readLines(body));
+            OwmForecastParser.parse(new ByteArrayInputStream(body));
+        }
+
+        Debug.startAllocCounting();
+
+        Debug.resetThreadAllocSize();
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            parseWithJsonObject(readLines(body));
+        }
+        long jsonObjectNanos = System.nanoTime() - start;
+        long jsonObjectBytes = Debug.getThreadAllocSize();
+
+        Debug.resetThreadAllocSize();
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            OwmForecastParser.parse(new ByteArrayInputStream(body));
+        }
+        long streamingNanos = System.nanoTime() - start;
+        long streamingBytes = Debug.getThreadAllocSize();
+
+        Debug.stopAllocCounting();
+
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "%d days (%d bytes): JSONObject %d us / %d B per parse, streaming %d us / %d B per parse",
+                numDays, body.length,
+                jsonObjectNanos / 1000 / BENCHMARK_ITERATIONS, jsonObjectBytes / BENCHMARK_ITERATIONS,
+                streamingNanos / 1000 / BENCHMARK_ITERATIONS, streamingBytes / BENCHMARK_ITERATIONS));
+    }
+}
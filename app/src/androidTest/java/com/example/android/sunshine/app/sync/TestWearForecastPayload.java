@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.google.android.gms.wearable.DataMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/*
+    Checks the bytes WearForecastPayload sends to the watch, and logs how big and how fast they
+    are next to the DataMap the watch used to be sent.
+ */
+public class TestWearForecastPayload extends AndroidTestCase {
+    public static final String LOG_TAG = TestWearForecastPayload.class.getSimpleName();
+
+    // 2017-03-11
+    private static final int FIRST_DAY = 17236;
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+    private static final int BENCHMARK_ITERATIONS = 100000;
+
+    // The same bytes TestForecastPayload in sunshinewear decodes.
+    private static final byte[] PAYLOAD = {
+            1, 1, 0x00, 0x00, 0x43, 0x54, 2,
+            0, 0x03, 0x20, 0x00, (byte) 0xfa, 0x00, (byte) 0xa0,
+            1, 0x01, (byte) 0xf5, 0x00, (byte) 0xd5, 0x00, 0x57
+    };
+
+    // The local midnight starting the given day, as the provider stores dates.
+    private static long localMidnight(int epochDay) {
+        long utcMidnight = epochDay * DAY_IN_MILLIS;
+        return utcMidnight - TimeZone.getDefault().getOffset(utcMidnight);
+    }
+
+    private static WearForecastPayload createTwoWeeks() {
+        WearForecastPayload payload = new WearForecastPayload(true);
+        for (int i = 0; i < WearForecastPayload.MAX_DAYS; i++) {
+            payload.add(localMidnight(FIRST_DAY + i), 800 + i, 22.75 + i, 10.25 - i);
+        }
+        return payload;
+    }
+
+    public void testEncode() {
+        byte[] bytes = new WearForecastPayload(true)
+                .add(localMidnight(FIRST_DAY), 800, 25.0, 16.0)
+                .add(localMidnight(FIRST_DAY + 1), 501, 21.3, 8.7)
+                .toByteArray();
+        assertTrue("Error: encoded " + Arrays.toString(bytes), Arrays.equals(PAYLOAD, bytes));
+    }
+
+    public void testSameForecastEncodesTheSame() {
+        assertTrue(Arrays.equals(createTwoWeeks().toByteArray(), createTwoWeeks().toByteArray()));
+    }
+
+    public void testRejectsDaysOutOfOrder() {
+        WearForecastPayload payload = new WearForecastPayload(true)
+                .add(localMidnight(FIRST_DAY + 1), 800, 25.0, 16.0);
+        try {
+            payload.add(localMidnight(FIRST_DAY), 800, 25.0, 16.0);
+            fail("Error: a day before the last one was accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testBenchmarkAgainstDataMap() {
+        byte[] payload = createTwoWeeks().toByteArray();
+
+        // What used to be sent: today only, as formatted strings, plus a timestamp.
+        DataMap today = new DataMap();
+        today.putLong("currentTimeMillis", System.currentTimeMillis());
+        today.putString("max", "23°");
+        today.putString("min", "10°");
+        today.putInt("weather_id", 800);
+
+        // And what sending every day that way would take.
+        DataMap twoWeeks = new DataMap();
+        ArrayList<DataMap> days = new ArrayList<>();
+        for (int i = 0; i < WearForecastPayload.MAX_DAYS; i++) {
+            DataMap day = new DataMap();
+            day.putLong("date", localMidnight(FIRST_DAY + i));
+            day.putString("max", (23 + i) + "°");
+            day.putString("min", (10 - i) + "°");
+            day.putInt("weather_id", 800 + i);
+            days.add(day);
+        }
+        twoWeeks.putDataMapArrayList("days", days);
+
+        Log.d(LOG_TAG, "14 day payload: " + payload.length + " bytes; today-only DataMap: "
+                + today.toByteArray().length + " bytes; 14 day DataMap: "
+                + twoWeeks.toByteArray().length + " bytes");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            createTwoWeeks().toByteArray();
+        }
+        long payloadNanos = (System.nanoTime() - start) / BENCHMARK_ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS / 100; i++) {
+            twoWeeks.toByteArray();
+        }
+        long dataMapNanos = (System.nanoTime() - start) / (BENCHMARK_ITERATIONS / 100);
+        Log.d(LOG_TAG, "Encoding 14 days: payload " + payloadNanos + " ns, DataMap "
+                + dataMapNanos + " ns");
+
+        assertEquals(7 + 14 * 7, payload.length);
+        assertTrue("Error: the payload should be smaller than the same days in a DataMap",
+                payload.length < twoWeeks.toByteArray().length);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Drives WearPublisher through a fake connection to check what it queues, coalesces and
+    sends.
+ */
+public class TestWearPublisher extends AndroidTestCase {
+    private static final long IDLE_DISCONNECT_MILLIS = 200;
+
+    private static final byte[] FIRST = {1};
+    private static final byte[] SECOND = {2};
+    private static final byte[] THIRD = {3};
+
+    // Does nothing until the test calls back into the publisher.
+    private static class FakeTransport implements WearPublisher.Transport {
+        int connects;
+        int disconnects;
+        boolean connected;
+        final List<byte[]> puts = new ArrayList<>();
+
+        @Override
+        public synchronized void connect(WearPublisher publisher) {
+            connects++;
+        }
+
+        @Override
+        public synchronized void disconnect() {
+            disconnects++;
+            connected = false;
+        }
+
+        @Override
+        public synchronized boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public synchronized void put(byte[] payload, WearPublisher publisher) {
+            puts.add(payload);
+        }
+    }
+
+    private FakeTransport mTransport;
+    private WearPublisher mPublisher;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mTransport = new FakeTransport();
+        mPublisher = new WearPublisher(mTransport, IDLE_DISCONNECT_MILLIS);
+    }
+
+    private void connect() {
+        mTransport.connected = true;
+        mPublisher.onConnected();
+    }
+
+    private void assertCounts(int queued, int coalesced, int sent, int failed) {
+        assertEquals("Error: queued", queued, mPublisher.getQueuedCount());
+        assertEquals("Error: coalesced", coalesced, mPublisher.getCoalescedCount());
+        assertEquals("Error: sent", sent, mPublisher.getSentCount());
+        assertEquals("Error: failed", failed, mPublisher.getFailedCount());
+    }
+
+    public void testQueuesUntilConnected() {
+        assertTrue(mPublisher.publish(FIRST));
+        assertEquals(1, mTransport.connects);
+        assertTrue("Error: sent before connecting", mTransport.puts.isEmpty());
+
+        connect();
+        assertEquals(1, mTransport.puts.size());
+        assertSame(FIRST, mTransport.puts.get(0));
+        mPublisher.onPutResult(FIRST, true);
+        assertCounts(1, 0, 1, 0);
+    }
+
+    public void testCoalescesToLatest() {
+        mPublisher.publish(FIRST);
+        mPublisher.publish(SECOND);
+        mPublisher.publish(THIRD);
+        assertEquals("Error: connected more than once", 1, mTransport.connects);
+
+        connect();
+        assertEquals(1, mTransport.puts.size());
+        assertSame(THIRD, mTransport.puts.get(0));
+        mPublisher.onPutResult(THIRD, true);
+        assertCounts(3, 2, 1, 0);
+    }
+
+    public void testWaitsForThePutInFlight() {
+        mPublisher.publish(FIRST);
+        connect();
+        mPublisher.publish(SECOND);
+        assertEquals(1, mTransport.puts.size());
+
+        mPublisher.onPutResult(FIRST, true);
+        assertEquals(2, mTransport.puts.size());
+        assertSame(SECOND, mTransport.puts.get(1));
+    }
+
+    public void testSkipsWhatTheWatchAlreadyHas() {
+        mPublisher.publish(FIRST);
+        connect();
+        mPublisher.onPutResult(FIRST, true);
+
+        assertFalse(mPublisher.publish(new byte[]{1}));
+        assertEquals(1, mTransport.puts.size());
+        assertCounts(1, 0, 1, 0);
+    }
+
+    public void testResendsWhatTheWatchHadWhileAnotherIsInFlight() {
+        mPublisher.publish(FIRST);
+        connect();
+        mPublisher.onPutResult(FIRST, true);
+
+        // The watch has FIRST and SECOND is on its way when FIRST comes back again.
+        mPublisher.publish(SECOND);
+        assertEquals(2, mTransport.puts.size());
+        assertTrue("Error: dropped a payload that SECOND is about to replace",
+                mPublisher.publish(new byte[]{1}));
+
+        mPublisher.onPutResult(SECOND, true);
+        assertEquals(3, mTransport.puts.size());
+        assertEquals(FIRST[0], mTransport.puts.get(2)[0]);
+        mPublisher.onPutResult(mTransport.puts.get(2), true);
+        assertCounts(3, 0, 3, 0);
+    }
+
+    public void testCountsFailures() {
+        mPublisher.publish(FIRST);
+        mPublisher.onConnectionFailed();
+        assertCounts(1, 0, 0, 1);
+
+        // The next publish tries to connect again, and a failed put can be retried.
+        mPublisher.publish(SECOND);
+        assertEquals(2, mTransport.connects);
+        connect();
+        mPublisher.onPutResult(SECOND, false);
+        assertTrue(mPublisher.publish(SECOND));
+        assertCounts(3, 0, 0, 2);
+    }
+
+    public void testDisconnectsWhenIdle() throws Exception {
+        mPublisher.publish(FIRST);
+        connect();
+        mPublisher.onPutResult(FIRST, true);
+
+        Thread.sleep(IDLE_DISCONNECT_MILLIS * 5);
+        assertEquals(1, mTransport.disconnects);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.utils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A tiny single-purpose HTTP/1.1 server for tests.  It answers every GET with the same body
+ * and ETag, unless the request matches an override, honours If-None-Match with a 304,
+ * optionally gzips, optionally waits before answering, and counts what it sends.
+ */
+public class StubHttpServer {
+    private final ServerSocket mServerSocket;
+    private final Thread mAcceptThread;
+
+    private volatile byte[] mBody = new byte[0];
+    private volatile String mETag;
+    private volatile boolean mGzipEnabled;
+    private volatile long mLatencyMillis;
+    // Bodies sent, without an ETag, to requests whose request line contains the key.
+    private final Map<String, byte[]> mOverrides = new ConcurrentHashMap<String, byte[]>();
+
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final AtomicInteger mNotModifiedCount = new AtomicInteger();
+    private final AtomicLong mBodyBytesSent = new AtomicLong();
+
+    public StubHttpServer() throws IOException {
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mAcceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        }, "StubHttpServer");
+        mAcceptThread.start();
+    }
+
+    public void setResponse(byte[] body, String eTag) {
+        mBody = body;
+        mETag = eTag;
+    }
+
+    /**
+     * Answers requests whose request line contains {@code marker}, such as a query parameter,
+     * with this body instead of the default one.
+     */
+    public void setResponseFor(String marker, byte[] body) {
+        mOverrides.put(marker, body);
+    }
+
+    /**
+     * When enabled, bodies are gzipped for clients that send "Accept-Encoding: gzip".
+     */
+    public void setGzipEnabled(boolean gzipEnabled) {
+        mGzipEnabled = gzipEnabled;
+    }
+
+    /**
+     * Makes every response wait this long before it is sent, to stand in for a slow network.
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        mLatencyMillis = latencyMillis;
+    }
+
+    public URL getUrl(String path) throws IOException {
+        return new URL("http", "127.0.0.1", mServerSocket.getLocalPort(), path);
+    }
+
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    public int getNotModifiedCount() {
+        return mNotModifiedCount.get();
+    }
+
+    public long getBodyBytesSent() {
+        return mBodyBytesSent.get();
+    }
+
+    public void shutdown() throws IOException {
+        mServerSocket.close();
+        try {
+            mAcceptThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acceptLoop() {
+        while (true) {
+            final Socket socket;
+            try {
+                socket = mServerSocket.accept();
+            } catch (SocketException e) {
+                // The server socket was closed, we're done.
+                return;
+            } catch (IOException e) {
+                return;
+            }
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        handle(socket);
+                    } catch (IOException e) {
+                        // The client went away; nothing to do.
+                    } finally {
+                        try {
+                            socket.close();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }
+            }).start();
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+        String requestLine = in.readLine();
+        if (requestLine == null) {
+            return;
+        }
+        Map<String, String> headers = new HashMap<String, String>();
+        String line;
+        while ((line = in.readLine()) != null && line.length() > 0) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US),
+                        line.substring(colon + 1).trim());
+            }
+        }
+        mRequestCount.incrementAndGet();
+
+        long latencyMillis = mLatencyMillis;
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        byte[] body = mBody;
+        String eTag = mETag;
+        for (Map.Entry<String, byte[]> override : mOverrides.entrySet()) {
+            if (requestLine.contains(override.getKey())) {
+                body = override.getValue();
+                eTag = null;
+                break;
+            }
+        }
+        OutputStream out = socket.getOutputStream();
+        if (eTag != null && eTag.equals(headers.get("if-none-match"))) {
+            mNotModifiedCount.incrementAndGet();
+            out.write(("HTTP/1.1 304 Not Modified\r\n" +
+                    "ETag: " + eTag + "\r\n" +
+                    "Connection: close\r\n\r\n").getBytes("US-ASCII"));
+        } else {
+            String acceptEncoding = headers.get("accept-encoding");
+            boolean gzip = mGzipEnabled && acceptEncoding != null && acceptEncoding.contains("gzip");
+            if (gzip) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                GZIPOutputStream gzipOut = new GZIPOutputStream(compressed);
+                gzipOut.write(body);
+                gzipOut.close();
+                body = compressed.toByteArray();
+            }
+            StringBuilder head = new StringBuilder("HTTP/1.1 200 OK\r\n")
+                    .append("Content-Type: application/json; charset=utf-8\r\n")
+                    .append("Content-Length: ").append(body.length).append("\r\n");
+            if (gzip) {
+                head.append("Content-Encoding: gzip\r\n");
+            }
+            if (eTag != null) {
+                head.append("ETag: ").append(eTag).append("\r\n");
+            }
+            head.append("Connection: close\r\n\r\n");
+            out.write(head.toString().getBytes("US-ASCII"));
+            out.write(body);
+            mBodyBytesSent.addAndGet(body.length);
+        }
+        out.flush();
+    }
+}
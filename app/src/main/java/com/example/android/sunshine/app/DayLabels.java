@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.text.format.Time;
+
+import java.text.SimpleDateFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Builds the day labels the forecast list and the detail view show ("Today, June 24",
+ * "Wednesday", "Mon Jun 30"), and remembers them.  Every label depends only on the day it is
+ * for, today, the locale and the time zone, so labels are kept per day and thrown away together
+ * as soon as any of the other three changes, which is how the list rolls over at midnight.
+ *
+ * The SimpleDateFormats are kept one per thread, since they aren't thread-safe and the widget
+ * and sync adapter ask for labels off the main thread.
+ */
+final class DayLabels {
+    // Two weeks of forecast in each of the four kinds of label, with room to spare.
+    private static final int MAX_ENTRIES = 128;
+
+    private static final int KIND_FRIENDLY = 0;
+    private static final int KIND_FULL_FRIENDLY = 1;
+    private static final int KIND_DAY_NAME = 2;
+    private static final int KIND_MONTH_DAY = 3;
+
+    private static DayLabels sInstance;
+
+    private final Context mContext;
+
+    // Everything below is guarded by the lock on mLabels.
+    private final LinkedHashMap<Long, String> mLabels =
+            new LinkedHashMap<Long, String>(MAX_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+    private int mToday;
+    private int mGmtOffset;
+    private Locale mLocale;
+    private String mTimeZoneId;
+    private int mHits;
+    private int mMisses;
+
+    private final ThreadLocal<Formatters> mFormatters = new ThreadLocal<>();
+
+    /**
+     * The formatters one thread uses, for one locale and time zone.
+     */
+    private static final class Formatters {
+        final Locale locale;
+        final TimeZone timeZone;
+        final SimpleDateFormat shortDate;
+        final SimpleDateFormat dayName;
+        final SimpleDateFormat monthDay;
+
+        Formatters(Locale locale, TimeZone timeZone) {
+            this.locale = locale;
+            this.timeZone = timeZone;
+            shortDate = create("EEE MMM dd", locale, timeZone);
+            dayName = create("EEEE", locale, timeZone);
+            monthDay = create("MMMM dd", locale, timeZone);
+        }
+
+        private static SimpleDateFormat create(String pattern, Locale locale, TimeZone timeZone) {
+            SimpleDateFormat format = new SimpleDateFormat(pattern, locale);
+            format.setTimeZone(timeZone);
+            return format;
+        }
+    }
+
+    DayLabels(Context context) {
+        mContext = context;
+    }
+
+    static synchronized DayLabels getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new DayLabels(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return "Today, June 24" for today, the day name for the rest of the week, and
+     * "Mon Jun 30" after that.
+     */
+    String getFriendlyDayString(long dateInMillis, long now) {
+        return getLabel(KIND_FRIENDLY, dateInMillis, now);
+    }
+
+    /**
+     * @return the day name followed by the month and day, e.g. "Tomorrow, June 25".
+     */
+    String getFullFriendlyDayString(long dateInMillis, long now) {
+        return getLabel(KIND_FULL_FRIENDLY, dateInMillis, now);
+    }
+
+    /**
+     * @return "Today", "Tomorrow", or the name of the day of the week.
+     */
+    String getDayName(long dateInMillis, long now) {
+        return getLabel(KIND_DAY_NAME, dateInMillis, now);
+    }
+
+    /**
+     * @return the month and day, e.g. "June 24".
+     */
+    String getFormattedMonthDay(long dateInMillis, long now) {
+        return getLabel(KIND_MONTH_DAY, dateInMillis, now);
+    }
+
+    int getHitCount() {
+        synchronized (mLabels) {
+            return mHits;
+        }
+    }
+
+    int getMissCount() {
+        synchronized (mLabels) {
+            return mMisses;
+        }
+    }
+
+    private String getLabel(int kind, long dateInMillis, long now) {
+        Locale locale = Locale.getDefault();
+        TimeZone timeZone = TimeZone.getDefault();
+        int gmtOffset = timeZone.getOffset(now) / 1000;
+        int today = Time.getJulianDay(now, gmtOffset);
+        int julianDay = Time.getJulianDay(dateInMillis, gmtOffset);
+        Long key = ((long) kind << 32) | (julianDay & 0xffffffffL);
+
+        synchronized (mLabels) {
+            if (today != mToday || gmtOffset != mGmtOffset || !locale.equals(mLocale)
+                    || !timeZone.getID().equals(mTimeZoneId)) {
+                mLabels.clear();
+                mToday = today;
+                mGmtOffset = gmtOffset;
+                mLocale = locale;
+                mTimeZoneId = timeZone.getID();
+            }
+            String label = mLabels.get(key);
+            if (label != null) {
+                mHits++;
+                return label;
+            }
+            mMisses++;
+        }
+
+        String label = buildLabel(kind, dateInMillis, julianDay, today,
+                getFormatters(locale, timeZone));
+
+        synchronized (mLabels) {
+            // Don't file a label under a day that has already rolled over.
+            if (today == mToday && gmtOffset == mGmtOffset && locale.equals(mLocale)
+                    && timeZone.getID().equals(mTimeZoneId)) {
+                mLabels.put(key, label);
+            }
+        }
+        return label;
+    }
+
+    private Formatters getFormatters(Locale locale, TimeZone timeZone) {
+        Formatters formatters = mFormatters.get();
+        if (formatters == null || !formatters.locale.equals(locale)
+                || !formatters.timeZone.getID().equals(timeZone.getID())) {
+            formatters = new Formatters(locale, timeZone);
+            mFormatters.set(formatters);
+        }
+        return formatters;
+    }
+
+    private String buildLabel(int kind, long dateInMillis, int julianDay, int today,
+            Formatters formatters) {
+        switch (kind) {
+            case KIND_FRIENDLY:
+                if (julianDay == today) {
+                    return mContext.getString(R.string.format_full_friendly_date,
+                            mContext.getString(R.string.today),
+                            formatters.monthDay.format(dateInMillis));
+                } else if (julianDay < today + 7) {
+                    return buildDayName(dateInMillis, julianDay, today, formatters);
+                }
+                return formatters.shortDate.format(dateInMillis);
+            case KIND_FULL_FRIENDLY:
+                return mContext.getString(R.string.format_full_friendly_date,
+                        buildDayName(dateInMillis, julianDay, today, formatters),
+                        formatters.monthDay.format(dateInMillis));
+            case KIND_DAY_NAME:
+                return buildDayName(dateInMillis, julianDay, today, formatters);
+            default:
+                return formatters.monthDay.format(dateInMillis);
+        }
+    }
+
+    private String buildDayName(long dateInMillis, int julianDay, int today,
+            Formatters formatters) {
+        if (julianDay == today) {
+            return mContext.getString(R.string.today);
+        } else if (julianDay == today + 1) {
+            return mContext.getString(R.string.tomorrow);
+        }
+        return formatters.dayName.format(dateInMillis);
+    }
+}
@@ -17,9 +17,11 @@ package com.example.android.sunshine.app;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.v4.view.ViewCompat;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -30,13 +32,16 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
-import com.example.android.sunshine.app.data.WeatherContract;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+
+import java.util.List;
 
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
  * from a {@link android.database.Cursor} to a {@link android.support.v7.widget.RecyclerView}.
  */
-public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> {
+public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder>
+        implements ItemChoiceManager.PositionIndex {
 
     private static final int VIEW_TYPE_TODAY = 0;
     private static final int VIEW_TYPE_FUTURE_DAY = 1;
@@ -45,6 +50,13 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
     private boolean mUseTodayLayout = true;
 
     private Cursor mCursor;
+    // The rows on screen, formatted ahead of time.  They can lag behind mCursor while the
+    // difference between the two is worked out.
+    private ForecastRow[] mRows;
+    // Bumped on every swap, so a diff finishing after a newer swap is dropped.
+    private int mGeneration;
+    // The position in mRows of each row's id.
+    private final LongIntMap mPositions = new LongIntMap(16);
     final private Context mContext;
     final private ForecastAdapterOnClickHandler mClickHandler;
     final private View mEmptyView;
@@ -73,9 +85,7 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            int dateColumnIndex = mCursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
-            mClickHandler.onClick(mCursor.getLong(dateColumnIndex), this);
+            mClickHandler.onClick(mRows[adapterPosition].dateInMillis, this);
             mICM.onClick(this);
         }
     }
@@ -90,6 +100,7 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         mEmptyView = emptyView;
         mICM = new ItemChoiceManager(this);
         mICM.setChoiceMode(choiceMode);
+        setHasStableIds(true);
     }
 
     /*
@@ -124,62 +135,75 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     @Override
     public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position) {
-        mCursor.moveToPosition(position);
-        int weatherId = mCursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
-        int defaultImage;
-
-        switch (getItemViewType(position)) {
-            case VIEW_TYPE_TODAY:
-                defaultImage = Utility.getArtResourceForWeatherCondition(weatherId);
-                break;
-            default:
-                defaultImage = Utility.getIconResourceForWeatherCondition(weatherId);
-        }
+        bindRow(forecastAdapterViewHolder, position, ~0);
+        mICM.onBindViewHolder(forecastAdapterViewHolder, position);
+    }
 
-        if ( Utility.usingLocalGraphics(mContext) ) {
-            forecastAdapterViewHolder.mIconView.setImageResource(defaultImage);
-        } else {
-            Glide.with(mContext)
-                    .load(Utility.getArtUrlForWeatherCondition(mContext, weatherId))
-                    .error(defaultImage)
-                    .crossFade()
-                    .into(forecastAdapterViewHolder.mIconView);
+    @Override
+    public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position,
+                                 List<Object> payloads) {
+        if ( payloads.isEmpty() ) {
+            onBindViewHolder(forecastAdapterViewHolder, position);
+            return;
         }
+        // Payloads are the ForecastRow.CHANGED_ flags of what a new load changed in this row.
+        int changes = 0;
+        for (Object payload : payloads) {
+            changes |= (Integer) payload;
+        }
+        bindRow(forecastAdapterViewHolder, position, changes);
+    }
+
+    private void bindRow(ForecastAdapterViewHolder forecastAdapterViewHolder, int position, int changes) {
+        ForecastRow row = mRows[position];
 
-        // this enables better animations. even if we lose state due to a device rotation,
-        // the animator can use this to re-find the original view
-        ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, "iconView" + position);
+        if ( (changes & ForecastRow.CHANGED_ICON) != 0 ) {
+            int defaultImage;
+            switch (getItemViewType(position)) {
+                case VIEW_TYPE_TODAY:
+                    defaultImage = row.artResource;
+                    break;
+                default:
+                    defaultImage = row.iconResource;
+            }
 
-        // Read date from cursor
-        long dateInMillis = mCursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+            if ( row.artUrl == null ) {
+                forecastAdapterViewHolder.mIconView.setImageResource(defaultImage);
+            } else {
+                Glide.with(mContext)
+                        .load(row.artUrl)
+                        .diskCacheStrategy(DiskCacheStrategy.ALL)
+                        .error(defaultImage)
+                        .crossFade()
+                        .listener(WeatherArt.getStatsListener())
+                        .into(forecastAdapterViewHolder.mIconView);
+            }
 
-        // Find TextView and set formatted date on it
-        forecastAdapterViewHolder.mDateView.setText(Utility.getFriendlyDayString(mContext, dateInMillis));
+            ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, row.transitionName);
+        }
 
-        // Read weather forecast from cursor
-        String description = Utility.getStringForWeatherCondition(mContext, weatherId);
+        if ( (changes & ForecastRow.CHANGED_DATE) != 0 ) {
+            forecastAdapterViewHolder.mDateView.setText(row.dateText);
+        }
 
-        // Find TextView and set weather forecast on it
-        forecastAdapterViewHolder.mDescriptionView.setText(description);
-        forecastAdapterViewHolder.mDescriptionView.setContentDescription(mContext.getString(R.string.a11y_forecast, description));
+        if ( (changes & ForecastRow.CHANGED_DESCRIPTION) != 0 ) {
+            forecastAdapterViewHolder.mDescriptionView.setText(row.description);
+            forecastAdapterViewHolder.mDescriptionView.setContentDescription(row.descriptionContentDescription);
+        }
 
         // For accessibility, we don't want a content description for the icon field
         // because the information is repeated in the description view and the icon
         // is not individually selectable
 
-        // Read high temperature from cursor
-        double high = mCursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP);
-        String highString = Utility.formatTemperature(mContext, high);
-        forecastAdapterViewHolder.mHighTempView.setText(highString);
-        forecastAdapterViewHolder.mHighTempView.setContentDescription(mContext.getString(R.string.a11y_high_temp, highString));
-
-        // Read low temperature from cursor
-        double low = mCursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP);
-        String lowString = Utility.formatTemperature(mContext, low);
-        forecastAdapterViewHolder.mLowTempView.setText(lowString);
-        forecastAdapterViewHolder.mLowTempView.setContentDescription(mContext.getString(R.string.a11y_low_temp, lowString));
+        if ( (changes & ForecastRow.CHANGED_HIGH) != 0 ) {
+            forecastAdapterViewHolder.mHighTempView.setText(row.highText);
+            forecastAdapterViewHolder.mHighTempView.setContentDescription(row.highContentDescription);
+        }
 
-        mICM.onBindViewHolder(forecastAdapterViewHolder, position);
+        if ( (changes & ForecastRow.CHANGED_LOW) != 0 ) {
+            forecastAdapterViewHolder.mLowTempView.setText(row.lowText);
+            forecastAdapterViewHolder.mLowTempView.setContentDescription(row.lowContentDescription);
+        }
     }
 
     public void onRestoreInstanceState(Bundle savedInstanceState) {
@@ -205,14 +229,90 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     @Override
     public int getItemCount() {
-        if ( null == mCursor ) return 0;
-        return mCursor.getCount();
+        if ( null == mRows ) return 0;
+        return mRows.length;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        // Each day appears once, so its date identifies its row across loads.
+        if ( null == mRows || position < 0 || position >= mRows.length ) return RecyclerView.NO_ID;
+        return mRows[position].dateInMillis;
+    }
+
+    /**
+     * @return the art pack URL for the row at the position if it is shown at the list icon size,
+     * otherwise null.  Used by ForecastArtPreloader.
+     */
+    String getListIconUrl(int position) {
+        if ( null == mRows || position < 0 || position >= mRows.length
+                || getItemViewType(position) != VIEW_TYPE_FUTURE_DAY ) {
+            return null;
+        }
+        return mRows[position].artUrl;
+    }
+
+    @Override
+    public int getPositionForId(long id) {
+        int position = mPositions.get(id);
+        return position == LongIntMap.NOT_FOUND ? RecyclerView.NO_POSITION : position;
+    }
+
+    private void setRows(ForecastRow[] rows) {
+        mRows = rows;
+        mPositions.reset(null == rows ? 0 : rows.length);
+        if ( null != rows ) {
+            for (int i = 0; i < rows.length; i++) {
+                mPositions.put(rows[i].dateInMillis, i);
+            }
+        }
     }
 
     public void swapCursor(Cursor newCursor) {
         mCursor = newCursor;
-        notifyDataSetChanged();
-        mEmptyView.setVisibility(getItemCount() == 0 ? View.VISIBLE : View.GONE);
+        ForecastRow[] newRows;
+        if ( newCursor instanceof ForecastLoader.ForecastCursor ) {
+            newRows = ((ForecastLoader.ForecastCursor) newCursor).getRows();
+        } else if ( newCursor != null ) {
+            // Not from ForecastLoader, so the rows have to be built here.
+            newRows = ForecastRow.fromCursor(mContext, newCursor);
+        } else {
+            newRows = null;
+        }
+
+        final int generation = ++mGeneration;
+        final ForecastRow[] oldRows = mRows;
+        if ( null == oldRows || oldRows.length == 0 || null == newRows || newRows.length == 0 ) {
+            // Nothing to compare, and callers expect the list to be empty or filled right away.
+            setRows(newRows);
+            notifyDataSetChanged();
+            if ( null != newRows ) {
+                mICM.confirmCheckedPositionsById(newRows.length);
+            }
+            mEmptyView.setVisibility(getItemCount() == 0 ? View.VISIBLE : View.GONE);
+            return;
+        }
+
+        // Work out what changed off the main thread, then tell the RecyclerView only that, so
+        // rows for days that didn't change keep their views and images.  The old rows stay on
+        // screen until then; they don't need the cursor, which the loader may already have closed.
+        final ForecastRow[] rows = newRows;
+        final boolean useTodayLayout = mUseTodayLayout;
+        new AsyncTask<Void, Void, DiffUtil.DiffResult>() {
+            @Override
+            protected DiffUtil.DiffResult doInBackground(Void... params) {
+                return DiffUtil.calculateDiff(new ForecastRowDiff(oldRows, rows, useTodayLayout));
+            }
+
+            @Override
+            protected void onPostExecute(DiffUtil.DiffResult diff) {
+                if ( generation != mGeneration ) return;
+                setRows(rows);
+                diff.dispatchUpdatesTo(ForecastAdapter.this);
+                mICM.confirmCheckedPositionsById(rows.length);
+                mEmptyView.setVisibility(getItemCount() == 0 ? View.VISIBLE : View.GONE);
+            }
+        }.execute();
     }
 
     public Cursor getCursor() {
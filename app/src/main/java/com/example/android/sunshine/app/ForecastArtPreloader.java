@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+import com.bumptech.glide.request.animation.GlideAnimation;
+import com.bumptech.glide.request.target.SimpleTarget;
+import com.bumptech.glide.request.target.Target;
+
+/**
+ * Loads the art for the rows just past the edge of the forecast list, in the direction it is
+ * scrolling, so their icons are in the memory cache by the time they are bound instead of
+ * popping in late.  Requests are made at the list icon's exact size and with the
+ * transformation an ImageView would ask for, so they share the bound request's cache key.
+ *
+ * This follows Glide's ListPreloader, which only works with AbsListView: a fixed ring of
+ * targets is reused, and clearing a target hands its image over to the memory cache.
+ */
+class ForecastArtPreloader extends RecyclerView.OnScrollListener {
+    private final Context mContext;
+    private final ForecastAdapter mAdapter;
+    private final PreloadTarget[] mTargets;
+    private int mNextTarget;
+
+    // The positions preloaded by the last scroll, so they aren't requested again.  Forgotten
+    // whenever the adapter's data changes, since other rows may be at those positions now.
+    private int mLastStart = -1;
+    private int mLastEnd = -1;
+
+    private static final class PreloadTarget extends SimpleTarget<GlideDrawable> {
+        PreloadTarget(int size) {
+            super(size, size);
+        }
+
+        @Override
+        public void onResourceReady(GlideDrawable resource,
+                GlideAnimation<? super GlideDrawable> glideAnimation) {
+            // Nothing to show; holding on to the request until it's cleared is the point.
+        }
+    }
+
+    ForecastArtPreloader(Context context, ForecastAdapter adapter, int maxPreload) {
+        mContext = context;
+        mAdapter = adapter;
+        int iconSize = context.getResources().getDimensionPixelSize(R.dimen.list_icon);
+        mTargets = new PreloadTarget[maxPreload];
+        for (int i = 0; i < maxPreload; i++) {
+            mTargets[i] = new PreloadTarget(iconSize);
+        }
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                reset();
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                reset();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                reset();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                reset();
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                reset();
+            }
+        });
+    }
+
+    /**
+     * Forgets what was preloaded, so the next scroll preloads its whole range again.
+     */
+    void reset() {
+        mLastStart = -1;
+        mLastEnd = -1;
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) {
+            return;
+        }
+        preloadAround(first, last, dy);
+    }
+
+    /**
+     * Preloads the rows past {@code last} when scrolling down, or before {@code first} when
+     * scrolling up, skipping those the previous call already preloaded.
+     */
+    void preloadAround(int first, int last, int dy) {
+        int start;
+        int end;
+        if (dy >= 0) {
+            start = last + 1;
+            end = start + mTargets.length;
+        } else {
+            end = first;
+            start = end - mTargets.length;
+        }
+        start = Math.max(start, 0);
+        end = Math.min(end, mAdapter.getItemCount());
+
+        for (int position = start; position < end; position++) {
+            if (position < mLastStart || position >= mLastEnd) {
+                preload(position);
+            }
+        }
+        mLastStart = start;
+        mLastEnd = end;
+    }
+
+    /**
+     * @return the target the row's art is loading into, or null if the row has no art to load.
+     */
+    Target<GlideDrawable> preload(int position) {
+        String url = mAdapter.getListIconUrl(position);
+        if (url == null) {
+            return null;
+        }
+        PreloadTarget target = mTargets[mNextTarget];
+        mNextTarget = (mNextTarget + 1) % mTargets.length;
+        Glide.clear(target);
+        Glide.with(mContext)
+                .load(url)
+                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                .fitCenter()
+                .into(target);
+        return target;
+    }
+}
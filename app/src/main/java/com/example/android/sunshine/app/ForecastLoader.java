@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.net.Uri;
+import android.support.v4.content.CursorLoader;
+
+/**
+ * A CursorLoader for the forecast list that also formats the list's rows on the loader's
+ * background thread, so none of that happens on the main thread while the list scrolls.
+ * The rows travel to onLoadFinished with the cursor they were built from.
+ *
+ * Since the rows carry day labels such as "Today", the loader also reloads when the date, time
+ * or time zone changes, the same way it does when the weather data does.
+ */
+class ForecastLoader extends CursorLoader {
+    private BroadcastReceiver mDateChangeReceiver;
+
+    /**
+     * The loaded cursor, together with the rows built from it.
+     */
+    static final class ForecastCursor extends CursorWrapper {
+        private final ForecastRow[] mRows;
+
+        ForecastCursor(Cursor cursor, ForecastRow[] rows) {
+            super(cursor);
+            mRows = rows;
+        }
+
+        ForecastRow[] getRows() {
+            return mRows;
+        }
+    }
+
+    ForecastLoader(Context context, Uri uri, String[] projection, String selection,
+            String[] selectionArgs, String sortOrder) {
+        super(context, uri, projection, selection, selectionArgs, sortOrder);
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mDateChangeReceiver == null) {
+            mDateChangeReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    // Reloads now if started, or when next started if not.
+                    onContentChanged();
+                }
+            };
+            IntentFilter filter = new IntentFilter(Intent.ACTION_DATE_CHANGED);
+            filter.addAction(Intent.ACTION_TIME_CHANGED);
+            filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+            getContext().registerReceiver(mDateChangeReceiver, filter);
+        }
+        super.onStartLoading();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        if (mDateChangeReceiver != null) {
+            getContext().unregisterReceiver(mDateChangeReceiver);
+            mDateChangeReceiver = null;
+        }
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        Cursor cursor = super.loadInBackground();
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return new ForecastCursor(cursor, ForecastRow.fromCursor(getContext(), cursor));
+        } catch (RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+    }
+}
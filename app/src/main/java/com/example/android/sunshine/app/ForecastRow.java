@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+
+/**
+ * One row of the forecast list with every string it shows already formatted, so that
+ * {@link ForecastAdapter} only copies fields into views when it binds.  Rows are built from the
+ * forecast cursor by {@link ForecastLoader} on its background thread.
+ */
+final class ForecastRow {
+    // The parts of a row that can differ between two rows for the same day.
+    static final int CHANGED_ICON = 1;
+    static final int CHANGED_DATE = 1 << 1;
+    static final int CHANGED_DESCRIPTION = 1 << 2;
+    static final int CHANGED_HIGH = 1 << 3;
+    static final int CHANGED_LOW = 1 << 4;
+
+    final long dateInMillis;
+    final int weatherId;
+    // The icon for ordinary rows and the larger art for the "today" row.
+    final int iconResource;
+    final int artResource;
+    // The art pack image to load instead, or null when Sunshine's own graphics are in use.
+    final String artUrl;
+    final String transitionName;
+    final String dateText;
+    final String description;
+    final String descriptionContentDescription;
+    final String highText;
+    final String highContentDescription;
+    final String lowText;
+    final String lowContentDescription;
+
+    private ForecastRow(Context context, Cursor cursor) {
+        dateInMillis = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+        weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+
+        iconResource = Utility.getIconResourceForWeatherCondition(weatherId);
+        artResource = Utility.getArtResourceForWeatherCondition(weatherId);
+        artUrl = Utility.usingLocalGraphics(context)
+                ? null : Utility.getArtUrlForWeatherCondition(context, weatherId);
+        // this enables better animations. even if we lose state due to a device rotation,
+        // the animator can use this to re-find the original view.  It goes by day rather than
+        // position, so it stays right when rows move.
+        transitionName = "iconView" + dateInMillis;
+
+        dateText = Utility.getFriendlyDayString(context, dateInMillis);
+
+        description = Utility.getStringForWeatherCondition(context, weatherId);
+        descriptionContentDescription = context.getString(R.string.a11y_forecast, description);
+
+        highText = Utility.formatTemperature(context,
+                cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP));
+        highContentDescription = context.getString(R.string.a11y_high_temp, highText);
+
+        lowText = Utility.formatTemperature(context,
+                cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP));
+        lowContentDescription = context.getString(R.string.a11y_low_temp, lowText);
+    }
+
+    /**
+     * Builds a row for every record of a cursor with ForecastFragment's columns.  The cursor is
+     * left positioned after its last row.
+     */
+    static ForecastRow[] fromCursor(Context context, Cursor cursor) {
+        ForecastRow[] rows = new ForecastRow[cursor.getCount()];
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            rows[cursor.getPosition()] = new ForecastRow(context, cursor);
+        }
+        return rows;
+    }
+
+    /**
+     * @return the CHANGED_ flags for the parts of the other row, for the same day, that show
+     * differently from this one; 0 if the two look the same.
+     */
+    int getChanges(ForecastRow other) {
+        int changes = 0;
+        if (iconResource != other.iconResource || artResource != other.artResource
+                || !sameString(artUrl, other.artUrl)) {
+            changes |= CHANGED_ICON;
+        }
+        if (!dateText.equals(other.dateText)) {
+            changes |= CHANGED_DATE;
+        }
+        if (!description.equals(other.description)
+                || !descriptionContentDescription.equals(other.descriptionContentDescription)) {
+            changes |= CHANGED_DESCRIPTION;
+        }
+        if (!highText.equals(other.highText)
+                || !highContentDescription.equals(other.highContentDescription)) {
+            changes |= CHANGED_HIGH;
+        }
+        if (!lowText.equals(other.lowText)
+                || !lowContentDescription.equals(other.lowContentDescription)) {
+            changes |= CHANGED_LOW;
+        }
+        return changes;
+    }
+
+    private static boolean sameString(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.support.v7.util.DiffUtil;
+
+/**
+ * Compares two generations of forecast rows for DiffUtil.  Rows are the same item when they
+ * are for the same day, and a changed row carries the CHANGED_ flags of what differs as its
+ * payload, so ForecastAdapter only touches those views.
+ */
+final class ForecastRowDiff extends DiffUtil.Callback {
+    private final ForecastRow[] mOldRows;
+    private final ForecastRow[] mNewRows;
+    private final boolean mUseTodayLayout;
+
+    ForecastRowDiff(ForecastRow[] oldRows, ForecastRow[] newRows, boolean useTodayLayout) {
+        mOldRows = oldRows;
+        mNewRows = newRows;
+        mUseTodayLayout = useTodayLayout;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return mOldRows.length;
+    }
+
+    @Override
+    public int getNewListSize() {
+        return mNewRows.length;
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return mOldRows[oldItemPosition].dateInMillis == mNewRows[newItemPosition].dateInMillis;
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        return !changesLayout(oldItemPosition, newItemPosition)
+                && mOldRows[oldItemPosition].getChanges(mNewRows[newItemPosition]) == 0;
+    }
+
+    @Override
+    public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+        // A day moving into or out of the "today" slot needs the other layout, so rebind it fully.
+        if (changesLayout(oldItemPosition, newItemPosition)) {
+            return null;
+        }
+        return mOldRows[oldItemPosition].getChanges(mNewRows[newItemPosition]);
+    }
+
+    private boolean changesLayout(int oldItemPosition, int newItemPosition) {
+        return mUseTodayLayout && (oldItemPosition == 0) != (newItemPosition == 0);
+    }
+}
@@ -19,7 +19,6 @@ import android.os.Build;
 import android.os.Bundle;
 import android.os.Parcel;
 import android.os.Parcelable;
-import android.support.v4.util.LongSparseArray;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
@@ -27,11 +26,24 @@ import android.util.SparseBooleanArray;
 import android.widget.AbsListView;
 import android.widget.Checkable;
 
+import java.util.Arrays;
+
 /**
  * The ItemChoiceManager class keeps track of which positions have been selected.  Note that it
  * doesn't take advantage of new adapter features to track changes in the underlying data.
  */
 public class ItemChoiceManager {
+    /**
+     * Implemented by adapters with stable ids that keep an index from id to position, so checked
+     * items can be found again after a data change without searching for them.
+     */
+    public interface PositionIndex {
+        /**
+         * @return the position of the item with the id, or RecyclerView.NO_POSITION.
+         */
+        int getPositionForId(long id);
+    }
+
     private final String LOG_TAG = MainActivity.class.getSimpleName();
     private final String SELECTED_ITEMS_KEY = "SIK";
     private int mChoiceMode;
@@ -68,11 +80,22 @@ public class ItemChoiceManager {
     SparseBooleanArray mCheckStates = new SparseBooleanArray();
 
     /**
-     * Running state of which IDs are currently checked.
-     * If there is a value for a given key, the checked state for that ID is true
-     * and the value holds the last known position in the adapter for that id.
+     * Running state of which IDs are currently checked, and the last known position in the
+     * adapter for each, in the first mCheckedIdCount entries of the two arrays.
      */
-    LongSparseArray<Integer> mCheckedIdStates = new LongSparseArray<Integer>();
+    long[] mCheckedIds = new long[1];
+    int[] mCheckedIdPositions = new int[1];
+    int mCheckedIdCount;
+
+    void addCheckedId(long id, int position) {
+        if (mCheckedIdCount == mCheckedIds.length) {
+            mCheckedIds = Arrays.copyOf(mCheckedIds, mCheckedIdCount * 2);
+            mCheckedIdPositions = Arrays.copyOf(mCheckedIdPositions, mCheckedIdCount * 2);
+        }
+        mCheckedIds[mCheckedIdCount] = id;
+        mCheckedIdPositions[mCheckedIdCount] = position;
+        mCheckedIdCount++;
+    }
 
     public void onClick(RecyclerView.ViewHolder vh) {
         if (mChoiceMode == AbsListView.CHOICE_MODE_NONE)
@@ -97,8 +120,8 @@ public class ItemChoiceManager {
                     }
                     mCheckStates.clear();
                     mCheckStates.put(position, true);
-                    mCheckedIdStates.clear();
-                    mCheckedIdStates.put(mAdapter.getItemId(position), position);
+                    mCheckedIdCount = 0;
+                    addCheckedId(mAdapter.getItemId(position), position);
                 }
                 // We directly call onBindViewHolder here because notifying that an item has
                 // changed on an item that has the focus causes it to lose focus, which makes
@@ -151,41 +174,44 @@ public class ItemChoiceManager {
 
     void clearSelections() {
         mCheckStates.clear();
-        mCheckedIdStates.clear();
+        mCheckedIdCount = 0;
     }
 
     void confirmCheckedPositionsById(int oldItemCount) {
         // Clear out the positional check states, we'll rebuild it below from IDs.
         mCheckStates.clear();
 
-        for (int checkedIndex = 0; checkedIndex < mCheckedIdStates.size(); checkedIndex++) {
-            final long id = mCheckedIdStates.keyAt(checkedIndex);
-            final int lastPos = mCheckedIdStates.valueAt(checkedIndex);
-
-            final long lastPosId = mAdapter.getItemId(lastPos);
-            if (id != lastPosId) {
-                // Look around to see if the ID is nearby. If not, uncheck it.
-                final int start = Math.max(0, lastPos - CHECK_POSITION_SEARCH_DISTANCE);
-                final int end = Math.min(lastPos + CHECK_POSITION_SEARCH_DISTANCE, oldItemCount);
-                boolean found = false;
-                for (int searchPos = start; searchPos < end; searchPos++) {
-                    final long searchId = mAdapter.getItemId(searchPos);
-                    if (id == searchId) {
-                        found = true;
-                        mCheckStates.put(searchPos, true);
-                        mCheckedIdStates.setValueAt(checkedIndex, searchPos);
-                        break;
-                    }
-                }
+        PositionIndex index = mAdapter instanceof PositionIndex ? (PositionIndex) mAdapter : null;
+        int kept = 0;
+        for (int checkedIndex = 0; checkedIndex < mCheckedIdCount; checkedIndex++) {
+            final long id = mCheckedIds[checkedIndex];
+            final int position = index != null
+                    ? index.getPositionForId(id)
+                    : searchPositionForId(id, mCheckedIdPositions[checkedIndex], oldItemCount);
+            // Unchecked ids are dropped by compacting the ones that are kept.
+            if (position != RecyclerView.NO_POSITION) {
+                mCheckStates.put(position, true);
+                mCheckedIds[kept] = id;
+                mCheckedIdPositions[kept] = position;
+                kept++;
+            }
+        }
+        mCheckedIdCount = kept;
+    }
 
-                if (!found) {
-                    mCheckedIdStates.delete(id);
-                    checkedIndex--;
-                }
-            } else {
-                mCheckStates.put(lastPos, true);
+    private int searchPositionForId(long id, int lastPos, int oldItemCount) {
+        if (lastPos < oldItemCount && mAdapter.getItemId(lastPos) == id) {
+            return lastPos;
+        }
+        // Look around to see if the ID is nearby. If not, uncheck it.
+        final int start = Math.max(0, lastPos - CHECK_POSITION_SEARCH_DISTANCE);
+        final int end = Math.min(lastPos + CHECK_POSITION_SEARCH_DISTANCE, oldItemCount);
+        for (int searchPos = start; searchPos < end; searchPos++) {
+            if (mAdapter.getItemId(searchPos) == id) {
+                return searchPos;
             }
         }
+        return RecyclerView.NO_POSITION;
     }
 
     public void onBindViewHolder(RecyclerView.ViewHolder vh, int position) {
@@ -204,11 +230,11 @@ public class ItemChoiceManager {
             inParcel.setDataPosition(0);
             mCheckStates = inParcel.readSparseBooleanArray();
             final int numStates = inParcel.readInt();
-            mCheckedIdStates.clear();
+            mCheckedIdCount = 0;
             for (int i=0; i<numStates; i++) {
                 final long key = inParcel.readLong();
                 final int value = inParcel.readInt();
-                mCheckedIdStates.put(key, value);
+                addCheckedId(key, value);
             }
         }
     }
@@ -216,11 +242,11 @@ public class ItemChoiceManager {
     public void onSaveInstanceState(Bundle outState) {
         Parcel outParcel = Parcel.obtain();
         outParcel.writeSparseBooleanArray(mCheckStates);
-        final int numStates = mCheckedIdStates.size();
+        final int numStates = mCheckedIdCount;
         outParcel.writeInt(numStates);
         for (int i=0; i<numStates; i++) {
-            outParcel.writeLong(mCheckedIdStates.keyAt(i));
-            outParcel.writeInt(mCheckedIdStates.valueAt(i));
+            outParcel.writeLong(mCheckedIds[i]);
+            outParcel.writeInt(mCheckedIdPositions[i]);
         }
         byte[] states = outParcel.marshall();
         outState.putByteArray(SELECTED_ITEMS_KEY, states);
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import java.util.Arrays;
+
+/**
+ * A map from long keys to non-negative int values, kept in plain arrays with open addressing,
+ * so neither a lookup nor an insert allocates or boxes.  Meant for indexes that are rebuilt
+ * wholesale rather than edited, so there is no remove.
+ */
+final class LongIntMap {
+    static final int NOT_FOUND = -1;
+
+    private long[] mKeys;
+    // The value plus one, so 0 can mark an empty slot whatever the key.
+    private int[] mValues;
+    private int mSize;
+
+    LongIntMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    // A power of two at least twice the size, so probe sequences stay short.
+    private static int capacityFor(int size) {
+        int capacity = 8;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new int[capacity];
+        mSize = 0;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    void clear() {
+        Arrays.fill(mValues, 0);
+        mSize = 0;
+    }
+
+    /**
+     * Empties the map, making room for the given number of entries.
+     */
+    void reset(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity > mKeys.length || capacity * 8 < mKeys.length) {
+            allocate(capacity);
+        } else {
+            clear();
+        }
+    }
+
+    /**
+     * @return the value for the key, or NOT_FOUND.
+     */
+    int get(long key) {
+        int mask = mKeys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (mValues[slot] == 0) {
+                return NOT_FOUND;
+            }
+            if (mKeys[slot] == key) {
+                return mValues[slot] - 1;
+            }
+        }
+    }
+
+    /**
+     * @param value must not be negative
+     */
+    void put(long key, int value) {
+        if ((mSize + 1) * 2 > mKeys.length) {
+            grow();
+        }
+        int mask = mKeys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (mValues[slot] == 0) {
+                mKeys[slot] = key;
+                mValues[slot] = value + 1;
+                mSize++;
+                return;
+            }
+            if (mKeys[slot] == key) {
+                mValues[slot] = value + 1;
+                return;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] keys = mKeys;
+        int[] values = mValues;
+        allocate(keys.length * 2);
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != 0) {
+                put(keys[i], values[i] - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.engine.cache.DiskLruCacheWrapper;
+import com.bumptech.glide.module.GlideModule;
+
+import java.io.File;
+
+/**
+ * Sets Glide up for the only thing Sunshine loads with it: weather art.  The art gets a disk
+ * cache of its own, sized for a couple of packs of originals plus the sizes they are shown at,
+ * rather than Glide's 250MB default.  Earlier versions used that default cache, so its
+ * directory is deleted, if it is still there, whenever the art cache is opened.
+ */
+public class SunshineGlideModule implements GlideModule {
+    private static final String ART_CACHE_DIR = "weather_art";
+    private static final int ART_CACHE_SIZE_BYTES = 8 * 1024 * 1024;
+
+    @Override
+    public void applyOptions(Context context, GlideBuilder builder) {
+        builder.setDiskCache(new ArtCacheFactory(context));
+    }
+
+    @Override
+    public void registerComponents(Context context, Glide glide) {
+    }
+
+    /**
+     * Opens the art cache.  Glide builds the disk cache lazily on one of its background
+     * threads, which is where the old directory can be deleted without holding up the main
+     * thread.
+     */
+    static final class ArtCacheFactory implements DiskCache.Factory {
+        private final Context mContext;
+
+        ArtCacheFactory(Context context) {
+            mContext = context.getApplicationContext();
+        }
+
+        @Override
+        public DiskCache build() {
+            File cacheDir = mContext.getCacheDir();
+            deleteDirectory(new File(cacheDir, DiskCache.Factory.DEFAULT_DISK_CACHE_DIR));
+            return DiskLruCacheWrapper.get(new File(cacheDir, ART_CACHE_DIR),
+                    ART_CACHE_SIZE_BYTES);
+        }
+    }
+
+    private static void deleteDirectory(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                deleteDirectory(file);
+            } else {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.example.android.sunshine.shared.WeatherConditions;
+
+import java.util.Locale;
+
+/**
+ * An immutable copy of the settings the list, the detail view, the widget and the sync adapter
+ * read for every row they show.  Reading them straight from SharedPreferences costs a map lookup
+ * and a couple of resource string lookups each time, several times per bound row.
+ *
+ * The current snapshot is built the first time it is asked for and rebuilt by a listener on the
+ * default SharedPreferences whenever any setting changes, so callers just read its fields.
+ * SharedPreferences calls that listener on the main thread, so a setting written anywhere else
+ * only shows up here once the main thread gets to it.  Code that writes settings off the main
+ * thread and reads them straight back should write them through {@link #commit}.
+ */
+public final class SunshinePreferences {
+    private static final Object sLock = new Object();
+    private static volatile SunshinePreferences sCurrent;
+    // SharedPreferences only keeps weak references to its listeners.
+    private static SharedPreferences.OnSharedPreferenceChangeListener sListener;
+
+    public final String location;
+    public final boolean metric;
+    public final String artPackFormat;
+    public final boolean localGraphics;
+    public final boolean notificationsEnabled;
+
+    // Art pack URLs indexed by weather condition.
+    private final String[] mArtUrls;
+
+    private SunshinePreferences(Context context, SharedPreferences prefs) {
+        location = prefs.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default));
+
+        String metricUnits = context.getString(R.string.pref_units_metric);
+        metric = prefs.getString(context.getString(R.string.pref_units_key), metricUnits)
+                .equals(metricUnits);
+
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        artPackFormat = prefs.getString(context.getString(R.string.pref_art_pack_key),
+                sunshineArtPack);
+        localGraphics = artPackFormat.equals(sunshineArtPack);
+
+        notificationsEnabled = prefs.getBoolean(
+                context.getString(R.string.pref_enable_notifications_key),
+                Boolean.parseBoolean(
+                        context.getString(R.string.pref_enable_notifications_default)));
+
+        mArtUrls = new String[WeatherConditions.CONDITION_COUNT];
+        for (int condition = 0; condition < mArtUrls.length; condition++) {
+            mArtUrls[condition] = String.format(Locale.US, artPackFormat,
+                    WeatherConditions.getArtName(condition));
+        }
+    }
+
+    /**
+     * @return the settings as they are now.  Hold on to the result for no longer than it takes
+     * to use it; a later call may return a newer snapshot.
+     */
+    public static SunshinePreferences get(Context context) {
+        SunshinePreferences current = sCurrent;
+        if (current != null) {
+            return current;
+        }
+        synchronized (sLock) {
+            if (sCurrent == null) {
+                final Context appContext = context.getApplicationContext();
+                SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
+                sListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+                        sCurrent = new SunshinePreferences(appContext, prefs);
+                    }
+                };
+                prefs.registerOnSharedPreferenceChangeListener(sListener);
+                sCurrent = new SunshinePreferences(appContext, prefs);
+            }
+            return sCurrent;
+        }
+    }
+
+    /**
+     * Commits the editor's changes and rebuilds the snapshot on the calling thread, so the next
+     * {@link #get} on any thread sees them without waiting for the main thread.
+     *
+     * @return the result of {@link SharedPreferences.Editor#commit()}.
+     */
+    public static boolean commit(Context context, SharedPreferences.Editor editor) {
+        boolean committed = editor.commit();
+        synchronized (sLock) {
+            if (sCurrent == null) {
+                // Nothing built yet; the first get() reads the new values.
+                return committed;
+            }
+            Context appContext = context.getApplicationContext();
+            sCurrent = new SunshinePreferences(appContext,
+                    PreferenceManager.getDefaultSharedPreferences(appContext));
+        }
+        return committed;
+    }
+
+    /**
+     * @param condition one of the WeatherConditions other than UNKNOWN
+     * @return the URL of the condition's image in the current art pack.
+     */
+    public String getArtUrl(int condition) {
+        return mArtUrls[condition];
+    }
+}
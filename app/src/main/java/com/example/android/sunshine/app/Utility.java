@@ -20,27 +20,23 @@ import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.preference.PreferenceManager;
-import android.text.format.Time;
 
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+import com.example.android.sunshine.shared.WeatherConditions;
 
 import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Locale;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 public class Utility {
     public static String getPreferredLocation(Context context) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        return prefs.getString(context.getString(R.string.pref_location_key),
-                context.getString(R.string.pref_location_default));
+        return SunshinePreferences.get(context).location;
     }
 
     public static boolean isMetric(Context context) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        return prefs.getString(context.getString(R.string.pref_units_key),
-                context.getString(R.string.pref_units_metric))
-                .equals(context.getString(R.string.pref_units_metric));
+        return SunshinePreferences.get(context).metric;
     }
 
     public static String formatTemperature(Context context, double temperature) {
@@ -78,30 +74,8 @@ public class Utility {
         // For tomorrow:  "Tomorrow"
         // For the next 5 days: "Wednesday" (just the day name)
         // For all days after that: "Mon Jun 8"
-
-        Time time = new Time();
-        time.setToNow();
-        long currentTime = System.currentTimeMillis();
-        int julianDay = Time.getJulianDay(dateInMillis, time.gmtoff);
-        int currentJulianDay = Time.getJulianDay(currentTime, time.gmtoff);
-
-        // If the date we're building the String for is today's date, the format
-        // is "Today, June 24"
-        if (julianDay == currentJulianDay) {
-            String today = context.getString(R.string.today);
-            int formatId = R.string.format_full_friendly_date;
-            return String.format(context.getString(
-                    formatId,
-                    today,
-                    getFormattedMonthDay(context, dateInMillis)));
-        } else if ( julianDay < currentJulianDay + 7 ) {
-            // If the input date is less than a week in the future, just return the day name.
-            return getDayName(context, dateInMillis);
-        } else {
-            // Otherwise, use the form "Mon Jun 3"
-            SimpleDateFormat shortenedDateFormat = new SimpleDateFormat("EEE MMM dd");
-            return shortenedDateFormat.format(dateInMillis);
-        }
+        return DayLabels.getInstance(context)
+                .getFriendlyDayString(dateInMillis, System.currentTimeMillis());
     }
 
     /**
@@ -113,13 +87,8 @@ public class Utility {
      * @return a user-friendly representation of the date.
      */
     public static String getFullFriendlyDayString(Context context, long dateInMillis) {
-
-        String day = getDayName(context, dateInMillis);
-        int formatId = R.string.format_full_friendly_date;
-        return String.format(context.getString(
-                formatId,
-                day,
-                getFormattedMonthDay(context, dateInMillis)));
+        return DayLabels.getInstance(context)
+                .getFullFriendlyDayString(dateInMillis, System.currentTimeMillis());
     }
 
     /**
@@ -131,24 +100,8 @@ public class Utility {
      * @return
      */
     public static String getDayName(Context context, long dateInMillis) {
-        // If the date is today, return the localized version of "Today" instead of the actual
-        // day name.
-
-        Time t = new Time();
-        t.setToNow();
-        int julianDay = Time.getJulianDay(dateInMillis, t.gmtoff);
-        int currentJulianDay = Time.getJulianDay(System.currentTimeMillis(), t.gmtoff);
-        if (julianDay == currentJulianDay) {
-            return context.getString(R.string.today);
-        } else if ( julianDay == currentJulianDay +1 ) {
-            return context.getString(R.string.tomorrow);
-        } else {
-            Time time = new Time();
-            time.setToNow();
-            // Otherwise, the format is just the day of the week (e.g "Wednesday".
-            SimpleDateFormat dayFormat = new SimpleDateFormat("EEEE");
-            return dayFormat.format(dateInMillis);
-        }
+        return DayLabels.getInstance(context)
+                .getDayName(dateInMillis, System.currentTimeMillis());
     }
 
     /**
@@ -159,12 +112,8 @@ public class Utility {
      * @return The day in the form of a string formatted "December 6"
      */
     public static String getFormattedMonthDay(Context context, long dateInMillis ) {
-        Time time = new Time();
-        time.setToNow();
-        SimpleDateFormat dbDateFormat = new SimpleDateFormat(Utility.DATE_FORMAT);
-        SimpleDateFormat monthDayFormat = new SimpleDateFormat("MMMM dd");
-        String monthDayString = monthDayFormat.format(dateInMillis);
-        return monthDayString;
+        return DayLabels.getInstance(context)
+                .getFormattedMonthDay(dateInMillis, System.currentTimeMillis());
     }
 
     public static String getFormattedWind(Context context, float windSpeed, float degrees) {
@@ -200,6 +149,83 @@ public class Utility {
         return String.format(context.getString(windFormat), windSpeed, direction);
     }
 
+    // Drawables for each of the WeatherConditions, indexed by condition.
+    private static final int[] ICON_RESOURCES = {
+            R.drawable.ic_storm, R.drawable.ic_light_rain, R.drawable.ic_rain, R.drawable.ic_snow,
+            R.drawable.ic_fog, R.drawable.ic_clear, R.drawable.ic_light_clouds, R.drawable.ic_cloudy
+    };
+    private static final int[] ART_RESOURCES = {
+            R.drawable.art_storm, R.drawable.art_light_rain, R.drawable.art_rain, R.drawable.art_snow,
+            R.drawable.art_fog, R.drawable.art_clear, R.drawable.art_light_clouds,
+            R.drawable.art_clouds
+    };
+
+    // Condition descriptions indexed by weather id, starting at MIN_WEATHER_ID; 0 where
+    // OpenWeatherMap documents no description.
+    private static final int[] CONDITION_STRINGS =
+            new int[WeatherConditions.MAX_WEATHER_ID - WeatherConditions.MIN_WEATHER_ID + 1];
+
+    static {
+        for (int id = 200; id <= 232; id++) {
+            CONDITION_STRINGS[id - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_2xx;
+        }
+        for (int id = 300; id <= 321; id++) {
+            CONDITION_STRINGS[id - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_3xx;
+        }
+        CONDITION_STRINGS[500 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_500;
+        CONDITION_STRINGS[501 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_501;
+        CONDITION_STRINGS[502 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_502;
+        CONDITION_STRINGS[503 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_503;
+        CONDITION_STRINGS[504 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_504;
+        CONDITION_STRINGS[511 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_511;
+        CONDITION_STRINGS[520 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_520;
+        CONDITION_STRINGS[531 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_531;
+        CONDITION_STRINGS[600 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_600;
+        CONDITION_STRINGS[601 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_601;
+        CONDITION_STRINGS[602 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_602;
+        CONDITION_STRINGS[611 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_611;
+        CONDITION_STRINGS[612 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_612;
+        CONDITION_STRINGS[615 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_615;
+        CONDITION_STRINGS[616 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_616;
+        CONDITION_STRINGS[620 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_620;
+        CONDITION_STRINGS[621 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_621;
+        CONDITION_STRINGS[622 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_622;
+        CONDITION_STRINGS[701 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_701;
+        CONDITION_STRINGS[711 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_711;
+        CONDITION_STRINGS[721 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_721;
+        CONDITION_STRINGS[731 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_731;
+        CONDITION_STRINGS[741 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_741;
+        CONDITION_STRINGS[751 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_751;
+        CONDITION_STRINGS[761 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_761;
+        CONDITION_STRINGS[762 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_762;
+        CONDITION_STRINGS[771 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_771;
+        CONDITION_STRINGS[781 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_781;
+        CONDITION_STRINGS[800 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_800;
+        CONDITION_STRINGS[801 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_801;
+        CONDITION_STRINGS[802 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_802;
+        CONDITION_STRINGS[803 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_803;
+        CONDITION_STRINGS[804 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_804;
+        CONDITION_STRINGS[900 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_900;
+        CONDITION_STRINGS[901 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_901;
+        CONDITION_STRINGS[902 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_902;
+        CONDITION_STRINGS[903 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_903;
+        CONDITION_STRINGS[904 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_904;
+        CONDITION_STRINGS[905 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_905;
+        CONDITION_STRINGS[906 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_906;
+        CONDITION_STRINGS[951 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_951;
+        CONDITION_STRINGS[952 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_952;
+        CONDITION_STRINGS[953 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_953;
+        CONDITION_STRINGS[954 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_954;
+        CONDITION_STRINGS[955 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_955;
+        CONDITION_STRINGS[956 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_956;
+        CONDITION_STRINGS[957 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_957;
+        CONDITION_STRINGS[958 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_958;
+        CONDITION_STRINGS[959 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_959;
+        CONDITION_STRINGS[960 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_960;
+        CONDITION_STRINGS[961 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_961;
+        CONDITION_STRINGS[962 - WeatherConditions.MIN_WEATHER_ID] = R.string.condition_962;
+    }
+
     /**
      * Helper method to provide the icon resource id according to the weather condition id returned
      * by the OpenWeatherMap call.
@@ -207,32 +233,8 @@ public class Utility {
      * @return resource id for the corresponding icon. -1 if no relation is found.
      */
     public static int getIconResourceForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.ic_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.ic_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.ic_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.ic_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.ic_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.ic_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.ic_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.ic_cloudy;
-        }
-        return -1;
+        int condition = WeatherConditions.getCondition(weatherId);
+        return condition == WeatherConditions.UNKNOWN ? -1 : ICON_RESOURCES[condition];
     }
 
     /**
@@ -242,10 +244,7 @@ public class Utility {
      * @return true if Sunshine is using local graphics, false otherwise.
      */
     public static boolean usingLocalGraphics(Context context) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
-        return prefs.getString(context.getString(R.string.pref_art_pack_key),
-                sunshineArtPack).equals(sunshineArtPack);
+        return SunshinePreferences.get(context).localGraphics;
     }
 
     /**
@@ -257,36 +256,11 @@ public class Utility {
      * @return url for the corresponding weather artwork. null if no relation is found.
      */
     public static String getArtUrlForWeatherCondition(Context context, int weatherId) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        String formatArtUrl = prefs.getString(context.getString(R.string.pref_art_pack_key),
-                context.getString(R.string.pref_art_pack_sunshine));
-
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return String.format(Locale.US, formatArtUrl, "storm");
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return String.format(Locale.US, formatArtUrl, "light_rain");
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return String.format(Locale.US, formatArtUrl, "rain");
-        } else if (weatherId == 511) {
-            return String.format(Locale.US, formatArtUrl, "snow");
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return String.format(Locale.US, formatArtUrl, "rain");
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return String.format(Locale.US, formatArtUrl, "snow");
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return String.format(Locale.US, formatArtUrl, "fog");
-        } else if (weatherId == 761 || weatherId == 781) {
-            return String.format(Locale.US, formatArtUrl, "storm");
-        } else if (weatherId == 800) {
-            return String.format(Locale.US, formatArtUrl, "clear");
-        } else if (weatherId == 801) {
-            return String.format(Locale.US, formatArtUrl, "light_clouds");
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return String.format(Locale.US, formatArtUrl, "clouds");
+        int condition = WeatherConditions.getCondition(weatherId);
+        if (condition == WeatherConditions.UNKNOWN) {
+            return null;
         }
-        return null;
+        return SunshinePreferences.get(context).getArtUrl(condition);
     }
 
     /**
@@ -296,32 +270,8 @@ public class Utility {
      * @return resource id for the corresponding icon. -1 if no relation is found.
      */
     public static int getArtResourceForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.art_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.art_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.art_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.art_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.art_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.art_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.art_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.art_clouds;
-        }
-        return -1;
+        int condition = WeatherConditions.getCondition(weatherId);
+        return condition == WeatherConditions.UNKNOWN ? -1 : ART_RESOURCES[condition];
     }
 
     /**
@@ -332,172 +282,13 @@ public class Utility {
      * @return string for the weather condition. null if no relation is found.
      */
     public static String getStringForWeatherCondition(Context context, int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        int stringId;
-        if (weatherId >= 200 && weatherId <= 232) {
-            stringId = R.string.condition_2xx;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            stringId = R.string.condition_3xx;
-        } else switch(weatherId) {
-            case 500:
-                stringId = R.string.condition_500;
-                break;
-            case 501:
-                stringId = R.string.condition_501;
-                break;
-            case 502:
-                stringId = R.string.condition_502;
-                break;
-            case 503:
-                stringId = R.string.condition_503;
-                break;
-            case 504:
-                stringId = R.string.condition_504;
-                break;
-            case 511:
-                stringId = R.string.condition_511;
-                break;
-            case 520:
-                stringId = R.string.condition_520;
-                break;
-            case 531:
-                stringId = R.string.condition_531;
-                break;
-            case 600:
-                stringId = R.string.condition_600;
-                break;
-            case 601:
-                stringId = R.string.condition_601;
-                break;
-            case 602:
-                stringId = R.string.condition_602;
-                break;
-            case 611:
-                stringId = R.string.condition_611;
-                break;
-            case 612:
-                stringId = R.string.condition_612;
-                break;
-            case 615:
-                stringId = R.string.condition_615;
-                break;
-            case 616:
-                stringId = R.string.condition_616;
-                break;
-            case 620:
-                stringId = R.string.condition_620;
-                break;
-            case 621:
-                stringId = R.string.condition_621;
-                break;
-            case 622:
-                stringId = R.string.condition_622;
-                break;
-            case 701:
-                stringId = R.string.condition_701;
-                break;
-            case 711:
-                stringId = R.string.condition_711;
-                break;
-            case 721:
-                stringId = R.string.condition_721;
-                break;
-            case 731:
-                stringId = R.string.condition_731;
-                break;
-            case 741:
-                stringId = R.string.condition_741;
-                break;
-            case 751:
-                stringId = R.string.condition_751;
-                break;
-            case 761:
-                stringId = R.string.condition_761;
-                break;
-            case 762:
-                stringId = R.string.condition_762;
-                break;
-            case 771:
-                stringId = R.string.condition_771;
-                break;
-            case 781:
-                stringId = R.string.condition_781;
-                break;
-            case 800:
-                stringId = R.string.condition_800;
-                break;
-            case 801:
-                stringId = R.string.condition_801;
-                break;
-            case 802:
-                stringId = R.string.condition_802;
-                break;
-            case 803:
-                stringId = R.string.condition_803;
-                break;
-            case 804:
-                stringId = R.string.condition_804;
-                break;
-            case 900:
-                stringId = R.string.condition_900;
-                break;
-            case 901:
-                stringId = R.string.condition_901;
-                break;
-            case 902:
-                stringId = R.string.condition_902;
-                break;
-            case 903:
-                stringId = R.string.condition_903;
-                break;
-            case 904:
-                stringId = R.string.condition_904;
-                break;
-            case 905:
-                stringId = R.string.condition_905;
-                break;
-            case 906:
-                stringId = R.string.condition_906;
-                break;
-            case 951:
-                stringId = R.string.condition_951;
-                break;
-            case 952:
-                stringId = R.string.condition_952;
-                break;
-            case 953:
-                stringId = R.string.condition_953;
-                break;
-            case 954:
-                stringId = R.string.condition_954;
-                break;
-            case 955:
-                stringId = R.string.condition_955;
-                break;
-            case 956:
-                stringId = R.string.condition_956;
-                break;
-            case 957:
-                stringId = R.string.condition_957;
-                break;
-            case 958:
-                stringId = R.string.condition_958;
-                break;
-            case 959:
-                stringId = R.string.condition_959;
-                break;
-            case 960:
-                stringId = R.string.condition_960;
-                break;
-            case 961:
-                stringId = R.string.condition_961;
-                break;
-            case 962:
-                stringId = R.string.condition_962;
-                break;
-            default:
-                return context.getString(R.string.condition_unknown, weatherId);
+        int stringId = 0;
+        if (weatherId >= WeatherConditions.MIN_WEATHER_ID
+                && weatherId <= WeatherConditions.MAX_WEATHER_ID) {
+            stringId = CONDITION_STRINGS[weatherId - WeatherConditions.MIN_WEATHER_ID];
+        }
+        if (stringId == 0) {
+            return context.getString(R.string.condition_unknown, weatherId);
         }
         return context.getString(stringId);
     }
@@ -529,6 +320,39 @@ public class Utility {
         return sp.getInt(c.getString(R.string.pref_location_status_key), SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN);
     }
 
+    /**
+     * @param c Context used to get the SharedPreferences
+     * @param locationSetting the location to look up
+     * @return the status of the last sync of that location
+     */
+    @SuppressWarnings("ResourceType")
+    static public @SunshineSyncAdapter.LocationStatus
+    int getLocationStatus(Context c, String locationSetting){
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
+        return sp.getInt(getLocationStatusKey(c, locationSetting),
+                SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN);
+    }
+
+    /**
+     * @return the SharedPreferences key holding the status of one location.
+     */
+    public static String getLocationStatusKey(Context c, String locationSetting) {
+        return c.getString(R.string.pref_location_status_key) + ":" + locationSetting;
+    }
+
+    /**
+     * Returns every location the sync adapter should keep a forecast for.  The preferred
+     * location always comes first.
+     */
+    public static Set<String> getTrackedLocations(Context context) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        Set<String> locations = new LinkedHashSet<>();
+        locations.add(getPreferredLocation(context));
+        locations.addAll(prefs.getStringSet(context.getString(R.string.pref_tracked_locations_key),
+                Collections.<String>emptySet()));
+        return locations;
+    }
+
     /**
      * Resets the location status.  (Sets it to SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN)
      * @param c Context used to get the SharedPreferences
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+import com.example.android.sunshine.shared.WeatherConditions;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Keeps the art pack images close at hand.  A pack is one small image per weather condition,
+ * so whenever a sync changes the preferred location's forecast the whole pack is downloaded
+ * into Glide's disk cache (which {@link SunshineGlideModule} sets aside for the art), and the
+ * list preloads the rows it is about to show into the memory cache.  The listener here counts
+ * how often a request for art was answered from memory.
+ */
+public final class WeatherArt {
+    private static final String LOG_TAG = WeatherArt.class.getSimpleName();
+    // Log the hit ratio every so many requests.
+    private static final int LOG_INTERVAL = 50;
+
+    private static final Object sLock = new Object();
+    private static int sRequests;
+    private static int sMemoryHits;
+
+    private static final RequestListener<String, GlideDrawable> STATS_LISTENER =
+            new RequestListener<String, GlideDrawable>() {
+                @Override
+                public boolean onException(Exception e, String model, Target<GlideDrawable> target,
+                        boolean isFirstResource) {
+                    record(false);
+                    return false;
+                }
+
+                @Override
+                public boolean onResourceReady(GlideDrawable resource, String model,
+                        Target<GlideDrawable> target, boolean isFromMemoryCache,
+                        boolean isFirstResource) {
+                    record(isFromMemoryCache);
+                    return false;
+                }
+            };
+
+    private WeatherArt() {
+    }
+
+    /**
+     * @return a listener to attach to art requests that should count towards the hit ratio.
+     */
+    public static RequestListener<String, GlideDrawable> getStatsListener() {
+        return STATS_LISTENER;
+    }
+
+    private static void record(boolean memoryHit) {
+        synchronized (sLock) {
+            sRequests++;
+            if (memoryHit) {
+                sMemoryHits++;
+            }
+            if (sRequests % LOG_INTERVAL == 0) {
+                Log.d(LOG_TAG, "Art memory cache hit ratio " + sMemoryHits + "/" + sRequests);
+            }
+        }
+    }
+
+    public static int getRequestCount() {
+        synchronized (sLock) {
+            return sRequests;
+        }
+    }
+
+    public static int getMemoryHitCount() {
+        synchronized (sLock) {
+            return sMemoryHits;
+        }
+    }
+
+    /**
+     * @return the fraction of counted art requests answered from the memory cache, or 0 if
+     * there haven't been any.
+     */
+    public static float getMemoryHitRatio() {
+        synchronized (sLock) {
+            return sRequests == 0 ? 0f : (float) sMemoryHits / sRequests;
+        }
+    }
+
+    /**
+     * Downloads every image of the current art pack that isn't on disk yet.  Blocks, so call it
+     * from a background thread; the sync adapter calls it after a sync that wrote new rows for
+     * the preferred location.
+     *
+     * @return the number of images now on disk.
+     */
+    public static int warm(Context context) {
+        SunshinePreferences prefs = SunshinePreferences.get(context);
+        if (prefs.localGraphics) {
+            return 0;
+        }
+        int warmed = 0;
+        for (int condition = 0; condition < WeatherConditions.CONDITION_COUNT; condition++) {
+            String url = prefs.getArtUrl(condition);
+            try {
+                Glide.with(context)
+                        .load(url)
+                        .downloadOnly(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL)
+                        .get();
+                warmed++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                Log.w(LOG_TAG, "Couldn't download " + url, e);
+            }
+        }
+        return warmed;
+    }
+}
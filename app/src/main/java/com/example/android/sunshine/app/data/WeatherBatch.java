@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.os.Bundle;
+
+/**
+ * A batch of weather rows held column by column in primitive arrays, so large inserts don't
+ * have to box every value into a ContentValues.  Hand it to the provider with
+ * {@link WeatherContract.WeatherEntry#METHOD_BULK_INSERT_BATCH}, passing {@link #toBundle()}
+ * as the extras.
+ */
+public class WeatherBatch {
+    private static final String KEY_SIZE = "size";
+
+    final long[] locationIds;
+    final long[] dates;
+    final int[] weatherIds;
+    final String[] shortDescs;
+    final double[] minTemps;
+    final double[] maxTemps;
+    final double[] humidities;
+    final double[] pressures;
+    final double[] windSpeeds;
+    final double[] degrees;
+    private int mSize;
+
+    public WeatherBatch(int capacity) {
+        this(0, new long[capacity], new long[capacity], new int[capacity], new String[capacity],
+                new double[capacity], new double[capacity], new double[capacity],
+                new double[capacity], new double[capacity], new double[capacity]);
+    }
+
+    private WeatherBatch(int size, long[] locationIds, long[] dates, int[] weatherIds,
+                         String[] shortDescs, double[] minTemps, double[] maxTemps,
+                         double[] humidities, double[] pressures, double[] windSpeeds,
+                         double[] degrees) {
+        mSize = size;
+        this.locationIds = locationIds;
+        this.dates = dates;
+        this.weatherIds = weatherIds;
+        this.shortDescs = shortDescs;
+        this.minTemps = minTemps;
+        this.maxTemps = maxTemps;
+        this.humidities = humidities;
+        this.pressures = pressures;
+        this.windSpeeds = windSpeeds;
+        this.degrees = degrees;
+    }
+
+    /**
+     * Appends one day of weather.  The date is normalized when the batch is inserted.
+     *
+     * @throws ArrayIndexOutOfBoundsException if the batch is already at capacity
+     */
+    public void add(long locationId, long date, int weatherId, String shortDesc,
+                    double minTemp, double maxTemp, double humidity, double pressure,
+                    double windSpeed, double degree) {
+        int i = mSize;
+        locationIds[i] = locationId;
+        dates[i] = date;
+        weatherIds[i] = weatherId;
+        shortDescs[i] = shortDesc;
+        minTemps[i] = minTemp;
+        maxTemps[i] = maxTemp;
+        humidities[i] = humidity;
+        pressures[i] = pressure;
+        windSpeeds[i] = windSpeed;
+        degrees[i] = degree;
+        mSize = i + 1;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Wraps the batch's arrays, without copying them, for passing to ContentResolver#call.
+     */
+    public Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putInt(KEY_SIZE, mSize);
+        bundle.putLongArray(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationIds);
+        bundle.putLongArray(WeatherContract.WeatherEntry.COLUMN_DATE, dates);
+        bundle.putIntArray(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherIds);
+        bundle.putStringArray(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, shortDescs);
+        bundle.putDoubleArray(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, minTemps);
+        bundle.putDoubleArray(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, maxTemps);
+        bundle.putDoubleArray(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidities);
+        bundle.putDoubleArray(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressures);
+        bundle.putDoubleArray(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeeds);
+        bundle.putDoubleArray(WeatherContract.WeatherEntry.COLUMN_DEGREES, degrees);
+        return bundle;
+    }
+
+    static WeatherBatch fromBundle(Bundle bundle) {
+        return new WeatherBatch(bundle.getInt(KEY_SIZE),
+                bundle.getLongArray(WeatherContract.WeatherEntry.COLUMN_LOC_KEY),
+                bundle.getLongArray(WeatherContract.WeatherEntry.COLUMN_DATE),
+                bundle.getIntArray(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID),
+                bundle.getStringArray(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC),
+                bundle.getDoubleArray(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP),
+                bundle.getDoubleArray(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP),
+                bundle.getDoubleArray(WeatherContract.WeatherEntry.COLUMN_HUMIDITY),
+                bundle.getDoubleArray(WeatherContract.WeatherEntry.COLUMN_PRESSURE),
+                bundle.getDoubleArray(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED),
+                bundle.getDoubleArray(WeatherContract.WeatherEntry.COLUMN_DEGREES));
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.text.format.Time;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Inserts weather rows through a single compiled INSERT statement per transaction, binding
+ * each column by index instead of having SQLiteDatabase#insert build and parse a new
+ * statement from a ContentValues for every row.
+ */
+final class WeatherBulkInserter {
+
+    // The statement's parameter order; the binding code below relies on it.
+    private static final String[] COLUMNS = {
+            WeatherEntry.COLUMN_LOC_KEY,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    private static final String INSERT_SQL = buildInsertSql();
+
+    private WeatherBulkInserter() {
+    }
+
+    private static String buildInsertSql() {
+        StringBuilder sql = new StringBuilder("INSERT INTO ")
+                .append(WeatherEntry.TABLE_NAME).append(" (");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sql.append(i == 0 ? "" : ",").append(COLUMNS[i]);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        return sql.append(')').toString();
+    }
+
+    /**
+     * Inserts the rows in one transaction.  Rows that carry anything other than exactly the
+     * weather columns (an explicit _id, say) go through SQLiteDatabase#insert instead.
+     *
+     * @return the number of rows inserted
+     */
+    static int insert(SQLiteDatabase db, ContentValues[] values) {
+        int returnCount = 0;
+        Time time = new Time();
+        db.beginTransaction();
+        SQLiteStatement statement = db.compileStatement(INSERT_SQL);
+        try {
+            for (ContentValues value : values) {
+                if (!hasExactlyWeatherColumns(value)) {
+                    Long date = value.getAsLong(WeatherEntry.COLUMN_DATE);
+                    if (date != null) {
+                        value.put(WeatherEntry.COLUMN_DATE, WeatherContract.normalizeDate(date));
+                    }
+                    if (db.insert(WeatherEntry.TABLE_NAME, null, value) != -1) {
+                        returnCount++;
+                    }
+                    continue;
+                }
+                statement.bindLong(1, value.getAsLong(WeatherEntry.COLUMN_LOC_KEY));
+                statement.bindLong(2, normalizeDate(time, value.getAsLong(WeatherEntry.COLUMN_DATE)));
+                statement.bindLong(3, value.getAsLong(WeatherEntry.COLUMN_WEATHER_ID));
+                statement.bindString(4, value.getAsString(WeatherEntry.COLUMN_SHORT_DESC));
+                statement.bindDouble(5, value.getAsDouble(WeatherEntry.COLUMN_MIN_TEMP));
+                statement.bindDouble(6, value.getAsDouble(WeatherEntry.COLUMN_MAX_TEMP));
+                statement.bindDouble(7, value.getAsDouble(WeatherEntry.COLUMN_HUMIDITY));
+                statement.bindDouble(8, value.getAsDouble(WeatherEntry.COLUMN_PRESSURE));
+                statement.bindDouble(9, value.getAsDouble(WeatherEntry.COLUMN_WIND_SPEED));
+                statement.bindDouble(10, value.getAsDouble(WeatherEntry.COLUMN_DEGREES));
+                if (execute(statement)) {
+                    returnCount++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            statement.close();
+            db.endTransaction();
+        }
+        return returnCount;
+    }
+
+    /**
+     * Inserts the rows of a columnar batch in one transaction.
+     *
+     * @return the number of rows inserted
+     */
+    static int insert(SQLiteDatabase db, WeatherBatch batch) {
+        int returnCount = 0;
+        Time time = new Time();
+        db.beginTransaction();
+        SQLiteStatement statement = db.compileStatement(INSERT_SQL);
+        try {
+            for (int i = 0, size = batch.size(); i < size; i++) {
+                statement.bindLong(1, batch.locationIds[i]);
+                statement.bindLong(2, normalizeDate(time, batch.dates[i]));
+                statement.bindLong(3, batch.weatherIds[i]);
+                statement.bindString(4, batch.shortDescs[i]);
+                statement.bindDouble(5, batch.minTemps[i]);
+                statement.bindDouble(6, batch.maxTemps[i]);
+                statement.bindDouble(7, batch.humidities[i]);
+                statement.bindDouble(8, batch.pressures[i]);
+                statement.bindDouble(9, batch.windSpeeds[i]);
+                statement.bindDouble(10, batch.degrees[i]);
+                if (execute(statement)) {
+                    returnCount++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            statement.close();
+            db.endTransaction();
+        }
+        return returnCount;
+    }
+
+    private static boolean hasExactlyWeatherColumns(ContentValues value) {
+        if (value.size() != COLUMNS.length) {
+            return false;
+        }
+        for (String column : COLUMNS) {
+            if (value.get(column) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Like SQLiteDatabase#insert, a row that breaks a constraint is skipped rather than
+    // aborting the whole batch.
+    private static boolean execute(SQLiteStatement statement) {
+        try {
+            return statement.executeInsert() != -1;
+        } catch (SQLiteConstraintException e) {
+            return false;
+        }
+    }
+
+    // Same as WeatherContract#normalizeDate, but reuses the caller's Time.
+    private static long normalizeDate(Time time, long date) {
+        time.set(date);
+        int julianDay = Time.getJulianDay(date, time.gmtoff);
+        return time.setJulianDay(julianDay);
+    }
+}
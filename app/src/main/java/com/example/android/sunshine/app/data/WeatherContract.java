@@ -126,6 +126,29 @@ public class WeatherContract {
         // Degrees are meteorological degrees (e.g, 0 is north, 180 is south).  Stored as floats.
         public static final String COLUMN_DEGREES = "degrees";
 
+        // ContentProvider#call method that writes weather rows, only touching the ones whose
+        // values actually changed.  Pass the rows as a ContentValues array under
+        // EXTRA_WEATHER_VALUES; the returned Bundle holds the RESULT_ counts.  No change
+        // notification is sent when nothing was inserted or updated.
+        public static final String METHOD_UPSERT = "upsert_weather";
+        public static final String EXTRA_WEATHER_VALUES = "weather_values";
+        // ContentProvider#call method that inserts a WeatherBatch; pass WeatherBatch#toBundle()
+        // as the extras.  The returned Bundle holds RESULT_ROWS_INSERTED.
+        public static final String METHOD_BULK_INSERT_BATCH = "bulk_insert_weather_batch";
+        // ContentProvider#call method that checkpoints the database's write-ahead log, for the
+        // sync to call once it has finished writing.  The returned Bundle holds
+        // RESULT_FRAMES_CHECKPOINTED, -1 if the log isn't in use.
+        public static final String METHOD_CHECKPOINT = "checkpoint";
+        public static final String RESULT_FRAMES_CHECKPOINTED = "frames_checkpointed";
+        // ContentProvider#call method reporting how the provider's in-memory cache of the
+        // weather-by-location queries is doing, as RESULT_CACHE_HITS and RESULT_CACHE_MISSES.
+        public static final String METHOD_QUERY_CACHE_STATS = "query_cache_stats";
+        public static final String RESULT_CACHE_HITS = "cache_hits";
+        public static final String RESULT_CACHE_MISSES = "cache_misses";
+        public static final String RESULT_ROWS_INSERTED = "rows_inserted";
+        public static final String RESULT_ROWS_UPDATED = "rows_updated";
+        public static final String RESULT_ROWS_UNCHANGED = "rows_unchanged";
+
         public static Uri buildWeatherUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
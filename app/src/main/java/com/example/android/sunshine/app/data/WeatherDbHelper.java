@@ -16,8 +16,10 @@
 package com.example.android.sunshine.app.data;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
@@ -28,12 +30,108 @@ import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
     // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 3;
 
     static final String DATABASE_NAME = "weather.db";
 
+    // Serves the "forecast for a location from a date onward" queries that back the list, the
+    // widget, the watch and the notification.  The UNIQUE (date, location_id) index leads with
+    // the date, so it can't narrow a join down to one location.  This one leads with the
+    // location, then the date so the rows come out already sorted, and then carries the columns
+    // those queries project so they never have to touch the table itself.
+    static final String WEATHER_LOCATION_DATE_INDEX = "weather_location_date_idx";
+    static final String SQL_CREATE_WEATHER_LOCATION_DATE_INDEX =
+            "CREATE INDEX IF NOT EXISTS " + WEATHER_LOCATION_DATE_INDEX + " ON " +
+                    WeatherEntry.TABLE_NAME + " (" +
+                    WeatherEntry.COLUMN_LOC_KEY + ", " +
+                    WeatherEntry.COLUMN_DATE + ", " +
+                    WeatherEntry.COLUMN_WEATHER_ID + ", " +
+                    WeatherEntry.COLUMN_SHORT_DESC + ", " +
+                    WeatherEntry.COLUMN_MAX_TEMP + ", " +
+                    WeatherEntry.COLUMN_MIN_TEMP + ");";
+
+    // The oldest version we know how to migrate from.  Anything older is wiped and rebuilt.
+    static final int OLDEST_MIGRATABLE_VERSION = 2;
+
+    // Each entry moves the schema up by one version; fromVersion must run from
+    // OLDEST_MIGRATABLE_VERSION to DATABASE_VERSION - 1 with no gaps.
+    static final WeatherDbMigration[] MIGRATIONS = {
+            // 2 -> 3: index for the location/date join.
+            new WeatherDbMigration(2) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    createIndex(db, SQL_CREATE_WEATHER_LOCATION_DATE_INDEX);
+                }
+            }
+    };
+
+    // With write-ahead logging the sync's write transaction no longer locks out the list, the
+    // detail screen and the widget while it runs: readers get connections of their own from
+    // the framework's pool and see the last committed forecast.
+    static final boolean WRITE_AHEAD_LOGGING_ENABLED = true;
+
+    // SQLite checkpoints the log on its own once it reaches this many pages.  It's set well
+    // above what a sync writes so that doesn't happen mid-sync; instead the sync asks for a
+    // checkpoint once it's done, see WeatherContract.WeatherEntry.METHOD_CHECKPOINT.
+    static final int WAL_AUTOCHECKPOINT_PAGES = 2000;
+
+    private final boolean mWriteAheadLogging;
+
     public WeatherDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME, WRITE_AHEAD_LOGGING_ENABLED);
+    }
+
+    // Lets tests work on a database file of their own.
+    WeatherDbHelper(Context context, String name) {
+        this(context, name, WRITE_AHEAD_LOGGING_ENABLED);
+    }
+
+    WeatherDbHelper(Context context, String name, boolean writeAheadLogging) {
+        super(context, name, null, DATABASE_VERSION);
+        mWriteAheadLogging = writeAheadLogging;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(writeAheadLogging);
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (mWriteAheadLogging) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+                db.enableWriteAheadLogging();
+            }
+            runPragma(db, "PRAGMA wal_autocheckpoint=" + WAL_AUTOCHECKPOINT_PAGES);
+        }
+    }
+
+    /**
+     * Copies what the write-ahead log holds back into the database, without waiting on any
+     * reader that is still using the old pages.  Does nothing if the log isn't in use.
+     *
+     * @return the number of log frames that were checkpointed, or -1 if the log isn't in use.
+     */
+    int checkpoint() {
+        if (!mWriteAheadLogging) {
+            return -1;
+        }
+        Cursor cursor = getWritableDatabase().rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null);
+        try {
+            // The columns are: busy, frames in the log, frames checkpointed.
+            return cursor.moveToFirst() ? cursor.getInt(2) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Some pragmas return a row, which execSQL refuses, so step through them as a query.
+    private static void runPragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery(pragma, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
     }
 
     @Override
@@ -81,16 +179,25 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
 
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_LOCATION_DATE_INDEX);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        // This database is only a cache for online data, so its upgrade policy is
-        // to simply to discard the data and start over
-        // Note that this only fires if you change the version number for your database.
-        // It does NOT depend on the version number for your application.
-        // If you want to update the schema without wiping data, commenting out the next 2 lines
-        // should be your top priority before modifying this method.
+        // SQLiteOpenHelper already has us inside a transaction, so if any step fails the
+        // database is left at oldVersion, untouched.
+        if (oldVersion < OLDEST_MIGRATABLE_VERSION) {
+            // We don't have the history to migrate this far back.  This database is only a
+            // cache for online data, so discard it and start over.
+            recreate(sqLiteDatabase);
+            return;
+        }
+        for (int version = oldVersion; version < newVersion; version++) {
+            MIGRATIONS[version - OLDEST_MIGRATABLE_VERSION].apply(sqLiteDatabase);
+        }
+    }
+
+    private void recreate(SQLiteDatabase sqLiteDatabase) {
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
         onCreate(sqLiteDatabase);
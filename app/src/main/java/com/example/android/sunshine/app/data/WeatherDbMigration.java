@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+
+/**
+ * One step of the weather database schema, from {@link #fromVersion} to the next version.
+ * {@link WeatherDbHelper} chains these together in onUpgrade, running each one in its own
+ * transaction, so a device can move up any number of versions without losing its cached
+ * forecasts.
+ *
+ * The static helpers cover the usual kinds of step: adding a column, adding an index and
+ * rebuilding a table whose constraints have to change.
+ */
+abstract class WeatherDbMigration {
+    final int fromVersion;
+
+    WeatherDbMigration(int fromVersion) {
+        this.fromVersion = fromVersion;
+    }
+
+    /**
+     * Moves the database from {@link #fromVersion} to fromVersion + 1.  Runs inside a
+     * transaction; throw to roll the step back.
+     */
+    abstract void migrate(SQLiteDatabase db);
+
+    /**
+     * Applies this step in its own transaction.
+     */
+    final void apply(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            migrate(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @param columnDefinition the column name, type and constraints, e.g. "feels_like REAL".
+     *                         SQLite only allows NOT NULL here if a default is also given.
+     */
+    static void addColumn(SQLiteDatabase db, String table, String columnDefinition) {
+        db.execSQL("ALTER TABLE " + table + " ADD COLUMN " + columnDefinition);
+    }
+
+    /**
+     * @param createIndexSql a CREATE INDEX IF NOT EXISTS statement
+     */
+    static void createIndex(SQLiteDatabase db, String createIndexSql) {
+        db.execSQL(createIndexSql);
+    }
+
+    /**
+     * Recreates a table with a new definition and copies its rows across, for the changes
+     * ALTER TABLE can't make (constraints, column types, dropping columns).  Indexes on the
+     * old table are dropped along with it and have to be created again by the caller.
+     *
+     * This follows the order SQLite documents for the purpose: build the new table under a
+     * temporary name, copy, drop the old table and only then rename.  Renaming the live table
+     * out of the way first would, on SQLite 3.26 and later, rewrite the foreign keys that point
+     * at it to follow the renamed copy, which is then dropped.  Foreign key enforcement has to
+     * be off, as it is for WeatherDbHelper.
+     *
+     * @param tableDefinition the parenthesised column and constraint list of the new version
+     *                        of the table, as it would follow CREATE TABLE name
+     * @param columns the columns to carry over; they must exist in both versions
+     */
+    static void rebuildTable(SQLiteDatabase db, String table, String tableDefinition,
+                             String... columns) {
+        String newTable = table + "_new";
+        String columnList = TextUtils.join(", ", columns);
+        db.execSQL("CREATE TABLE " + newTable + " " + tableDefinition);
+        db.execSQL("INSERT INTO " + newTable + " (" + columnList + ") SELECT " + columnList +
+                " FROM " + table);
+        db.execSQL("DROP TABLE " + table);
+        db.execSQL("ALTER TABLE " + newTable + " RENAME TO " + table);
+    }
+}
@@ -20,22 +20,33 @@ import android.content.ContentProvider;
 import android.content.ContentValues;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.os.Bundle;
+import android.os.Parcelable;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public class WeatherProvider extends ContentProvider {
 
     // The URI Matcher used by this content provider.
     private static final UriMatcher sUriMatcher = buildUriMatcher();
     private WeatherDbHelper mOpenHelper;
+    private final WeatherQueryCache mQueryCache = new WeatherQueryCache();
 
     static final int WEATHER = 100;
     static final int WEATHER_WITH_LOCATION = 101;
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
     static final int LOCATION = 300;
 
-    private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
+    static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
 
     static{
         sWeatherByLocationSettingQueryBuilder = new SQLiteQueryBuilder();
@@ -52,22 +63,27 @@ public class WeatherProvider extends ContentProvider {
     }
 
     //location.location_setting = ?
-    private static final String sLocationSettingSelection =
+    static final String sLocationSettingSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? ";
 
     //location.location_setting = ? AND date >= ?
-    private static final String sLocationSettingWithStartDateSelection =
+    static final String sLocationSettingWithStartDateSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? ";
 
     //location.location_setting = ? AND date = ?
-    private static final String sLocationSettingAndDaySelection =
+    static final String sLocationSettingAndDaySelection =
             WeatherContract.LocationEntry.TABLE_NAME +
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
 
+    //date = ? AND location_id = ?
+    static final String sDateAndLocationIdSelection =
+            WeatherContract.WeatherEntry.COLUMN_DATE + " = ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? ";
+
     private Cursor getWeatherByLocationSetting(Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long startDate = WeatherContract.WeatherEntry.getStartDateFromUri(uri);
@@ -108,6 +124,96 @@ public class WeatherProvider extends ContentProvider {
         );
     }
 
+    /**
+     * Serves the weather-by-location queries out of {@link #mQueryCache}, running and
+     * remembering the query on a miss.
+     */
+    private Cursor getCachedWeatherByLocationSetting(
+            Uri uri, int match, String[] projection, String sortOrder) {
+        String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
+        long date = match == WEATHER_WITH_LOCATION_AND_DATE
+                ? WeatherContract.WeatherEntry.getDateFromUri(uri)
+                : WeatherContract.WeatherEntry.getStartDateFromUri(uri);
+        String key = WeatherQueryCache.key(match, locationSetting, date, projection, sortOrder);
+
+        Cursor cached = mQueryCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = mQueryCache.getGeneration();
+        Cursor cursor = match == WEATHER_WITH_LOCATION_AND_DATE
+                ? getWeatherByLocationSettingAndDate(uri, projection, sortOrder)
+                : getWeatherByLocationSetting(uri, projection, sortOrder);
+        WeatherQueryCache.Snapshot snapshot = WeatherQueryCache.snapshot(locationSetting, cursor);
+        if (snapshot == null) {
+            return cursor;
+        }
+        cursor.close();
+        mQueryCache.put(key, generation, snapshot);
+        return snapshot.newCursor();
+    }
+
+    /**
+     * @return the location settings of the locations matching selection.
+     */
+    private static Set<String> queryLocationSettings(SQLiteDatabase db, String selection,
+                                                     String[] selectionArgs) {
+        Set<String> locationSettings = new HashSet<>();
+        Cursor cursor = db.query(WeatherContract.LocationEntry.TABLE_NAME,
+                new String[]{WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                selection, selectionArgs, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                locationSettings.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return locationSettings;
+    }
+
+    /**
+     * @return the location settings of the locations that own the weather rows matching
+     * selection.
+     */
+    private static Set<String> queryLocationSettingsForWeather(SQLiteDatabase db, String selection,
+                                                               String[] selectionArgs) {
+        return queryLocationSettings(db, WeatherContract.LocationEntry._ID + " IN (SELECT " +
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " FROM " +
+                WeatherContract.WeatherEntry.TABLE_NAME +
+                (TextUtils.isEmpty(selection) ? "" : " WHERE " + selection) + ")", selectionArgs);
+    }
+
+    /**
+     * @return the location settings of the given location row ids.
+     */
+    private static Set<String> queryLocationSettings(SQLiteDatabase db, Collection<Long> locationIds) {
+        if (locationIds.isEmpty()) {
+            return new HashSet<>();
+        }
+        List<String> args = new ArrayList<>(locationIds.size());
+        for (Long locationId : locationIds) {
+            args.add(String.valueOf(locationId));
+        }
+        String placeholders = TextUtils.join(",", Collections.nCopies(args.size(), "?"));
+        return queryLocationSettings(db, WeatherContract.LocationEntry._ID + " IN (" +
+                placeholders + ")", args.toArray(new String[args.size()]));
+    }
+
+    private static void addLocationId(Collection<Long> locationIds, ContentValues values) {
+        Long locationId = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+        if (locationId != null) {
+            locationIds.add(locationId);
+        }
+    }
+
+    private void invalidateQueryCache(Collection<String> locationSettings) {
+        for (String locationSetting : locationSettings) {
+            mQueryCache.invalidate(locationSetting);
+        }
+    }
+
     /*
         Students: Here is where you need to create the UriMatcher. This UriMatcher will
         match each URI to the WEATHER, WEATHER_WITH_LOCATION, WEATHER_WITH_LOCATION_AND_DATE,
@@ -175,16 +281,13 @@ public class WeatherProvider extends ContentProvider {
         // Here's the switch statement that, given a URI, will determine what kind of request it is,
         // and query the database accordingly.
         Cursor retCursor;
-        switch (sUriMatcher.match(uri)) {
+        final int match = sUriMatcher.match(uri);
+        switch (match) {
             // "weather/*/*"
             case WEATHER_WITH_LOCATION_AND_DATE:
-            {
-                retCursor = getWeatherByLocationSettingAndDate(uri, projection, sortOrder);
-                break;
-            }
             // "weather/*"
             case WEATHER_WITH_LOCATION: {
-                retCursor = getWeatherByLocationSetting(uri, projection, sortOrder);
+                retCursor = getCachedWeatherByLocationSetting(uri, match, projection, sortOrder);
                 break;
             }
             // "weather"
@@ -238,6 +341,9 @@ public class WeatherProvider extends ContentProvider {
                     returnUri = WeatherContract.WeatherEntry.buildWeatherUri(_id);
                 else
                     throw new android.database.SQLException("Failed to insert row into " + uri);
+                Set<Long> locationIds = new HashSet<>();
+                addLocationId(locationIds, values);
+                invalidateQueryCache(queryLocationSettings(db, locationIds));
                 break;
             }
             case LOCATION: {
@@ -246,6 +352,11 @@ public class WeatherProvider extends ContentProvider {
                     returnUri = WeatherContract.LocationEntry.buildLocationUri(_id);
                 else
                     throw new android.database.SQLException("Failed to insert row into " + uri);
+                String locationSetting =
+                        values.getAsString(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING);
+                if (locationSetting != null) {
+                    mQueryCache.invalidate(locationSetting);
+                }
                 break;
             }
             default:
@@ -262,20 +373,30 @@ public class WeatherProvider extends ContentProvider {
         int rowsDeleted;
         // this makes delete all rows return the number of rows deleted
         if ( null == selection ) selection = "1";
-        switch (match) {
-            case WEATHER:
-                rowsDeleted = db.delete(
-                        WeatherContract.WeatherEntry.TABLE_NAME, selection, selectionArgs);
-                break;
-            case LOCATION:
-                rowsDeleted = db.delete(
-                        WeatherContract.LocationEntry.TABLE_NAME, selection, selectionArgs);
-                break;
-            default:
-                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        Set<String> affectedLocations;
+        db.beginTransaction();
+        try {
+            switch (match) {
+                case WEATHER:
+                    affectedLocations = queryLocationSettingsForWeather(db, selection, selectionArgs);
+                    rowsDeleted = db.delete(
+                            WeatherContract.WeatherEntry.TABLE_NAME, selection, selectionArgs);
+                    break;
+                case LOCATION:
+                    affectedLocations = queryLocationSettings(db, selection, selectionArgs);
+                    rowsDeleted = db.delete(
+                            WeatherContract.LocationEntry.TABLE_NAME, selection, selectionArgs);
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Unknown uri: " + uri);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
         // Because a null deletes all rows
         if (rowsDeleted != 0) {
+            invalidateQueryCache(affectedLocations);
             getContext().getContentResolver().notifyChange(uri, null);
         }
         return rowsDeleted;
@@ -296,20 +417,42 @@ public class WeatherProvider extends ContentProvider {
         final int match = sUriMatcher.match(uri);
         int rowsUpdated;
 
-        switch (match) {
-            case WEATHER:
-                normalizeDate(values);
-                rowsUpdated = db.update(WeatherContract.WeatherEntry.TABLE_NAME, values, selection,
-                        selectionArgs);
-                break;
-            case LOCATION:
-                rowsUpdated = db.update(WeatherContract.LocationEntry.TABLE_NAME, values, selection,
-                        selectionArgs);
-                break;
-            default:
-                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        // The locations whose cached forecasts this update can change: the ones the rows belong
+        // to now, and the ones they're being moved to.
+        Set<String> affectedLocations;
+        db.beginTransaction();
+        try {
+            switch (match) {
+                case WEATHER: {
+                    normalizeDate(values);
+                    affectedLocations = queryLocationSettingsForWeather(db, selection, selectionArgs);
+                    Set<Long> newLocationIds = new HashSet<>();
+                    addLocationId(newLocationIds, values);
+                    affectedLocations.addAll(queryLocationSettings(db, newLocationIds));
+                    rowsUpdated = db.update(WeatherContract.WeatherEntry.TABLE_NAME, values, selection,
+                            selectionArgs);
+                    break;
+                }
+                case LOCATION: {
+                    affectedLocations = queryLocationSettings(db, selection, selectionArgs);
+                    String newLocationSetting =
+                            values.getAsString(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING);
+                    if (newLocationSetting != null) {
+                        affectedLocations.add(newLocationSetting);
+                    }
+                    rowsUpdated = db.update(WeatherContract.LocationEntry.TABLE_NAME, values, selection,
+                            selectionArgs);
+                    break;
+                }
+                default:
+                    throw new UnsupportedOperationException("Unknown uri: " + uri);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
         if (rowsUpdated != 0) {
+            invalidateQueryCache(affectedLocations);
             getContext().getContentResolver().notifyChange(uri, null);
         }
         return rowsUpdated;
@@ -321,20 +464,12 @@ public class WeatherProvider extends ContentProvider {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case WEATHER:
-                db.beginTransaction();
-                int returnCount = 0;
-                try {
-                    for (ContentValues value : values) {
-                        normalizeDate(value);
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
-                        if (_id != -1) {
-                            returnCount++;
-                        }
-                    }
-                    db.setTransactionSuccessful();
-                } finally {
-                    db.endTransaction();
+                int returnCount = WeatherBulkInserter.insert(db, values);
+                Set<Long> locationIds = new HashSet<>();
+                for (ContentValues value : values) {
+                    addLocationId(locationIds, value);
                 }
+                invalidateQueryCache(queryLocationSettings(db, locationIds));
                 getContext().getContentResolver().notifyChange(uri, null);
                 return returnCount;
             default:
@@ -342,6 +477,134 @@ public class WeatherProvider extends ContentProvider {
         }
     }
 
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (WeatherContract.WeatherEntry.METHOD_UPSERT.equals(method)) {
+            Parcelable[] parcelables =
+                    extras.getParcelableArray(WeatherContract.WeatherEntry.EXTRA_WEATHER_VALUES);
+            ContentValues[] values = new ContentValues[parcelables.length];
+            for (int i = 0; i < parcelables.length; i++) {
+                values[i] = (ContentValues) parcelables[i];
+            }
+            return upsertWeather(values);
+        } else if (WeatherContract.WeatherEntry.METHOD_BULK_INSERT_BATCH.equals(method)) {
+            SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            WeatherBatch batch = WeatherBatch.fromBundle(extras);
+            int returnCount = WeatherBulkInserter.insert(db, batch);
+            Set<Long> locationIds = new HashSet<>();
+            for (int i = 0; i < batch.size(); i++) {
+                locationIds.add(batch.locationIds[i]);
+            }
+            invalidateQueryCache(queryLocationSettings(db, locationIds));
+            getContext().getContentResolver().notifyChange(
+                    WeatherContract.WeatherEntry.CONTENT_URI, null);
+            Bundle result = new Bundle();
+            result.putInt(WeatherContract.WeatherEntry.RESULT_ROWS_INSERTED, returnCount);
+            return result;
+        } else if (WeatherContract.WeatherEntry.METHOD_QUERY_CACHE_STATS.equals(method)) {
+            Bundle result = new Bundle();
+            result.putInt(WeatherContract.WeatherEntry.RESULT_CACHE_HITS, mQueryCache.getHitCount());
+            result.putInt(WeatherContract.WeatherEntry.RESULT_CACHE_MISSES, mQueryCache.getMissCount());
+            return result;
+        } else if (WeatherContract.WeatherEntry.METHOD_CHECKPOINT.equals(method)) {
+            Bundle result = new Bundle();
+            result.putInt(WeatherContract.WeatherEntry.RESULT_FRAMES_CHECKPOINTED,
+                    mOpenHelper.checkpoint());
+            return result;
+        }
+        return super.call(method, arg, extras);
+    }
+
+    /**
+     * Writes weather rows, comparing each against the row already stored for its location and
+     * date.  New rows are inserted, changed rows are updated in place and identical rows are
+     * left alone, so a sync that brings nothing new doesn't rewrite the table or wake up the
+     * observers.
+     */
+    private Bundle upsertWeather(ContentValues[] values) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        int inserted = 0;
+        int updated = 0;
+        int unchanged = 0;
+        Set<Long> changedLocationIds = new HashSet<>();
+
+        db.beginTransaction();
+        try {
+            for (ContentValues value : values) {
+                normalizeDate(value);
+                value.remove(WeatherContract.WeatherEntry._ID);
+
+                // The (date, location_id) unique constraint gives us an index for this lookup.
+                String[] columns = value.keySet().toArray(new String[value.size()]);
+                String[] keyArgs = new String[]{
+                        value.getAsString(WeatherContract.WeatherEntry.COLUMN_DATE),
+                        value.getAsString(WeatherContract.WeatherEntry.COLUMN_LOC_KEY)};
+                Cursor stored = db.query(WeatherContract.WeatherEntry.TABLE_NAME, columns,
+                        sDateAndLocationIdSelection, keyArgs, null, null, null);
+                try {
+                    if (!stored.moveToFirst()) {
+                        if (db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value) != -1) {
+                            inserted++;
+                            addLocationId(changedLocationIds, value);
+                        }
+                    } else if (rowMatches(stored, value)) {
+                        unchanged++;
+                    } else {
+                        updated += db.update(WeatherContract.WeatherEntry.TABLE_NAME, value,
+                                sDateAndLocationIdSelection, keyArgs);
+                        addLocationId(changedLocationIds, value);
+                    }
+                } finally {
+                    stored.close();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (inserted + updated > 0) {
+            invalidateQueryCache(queryLocationSettings(db, changedLocationIds));
+            getContext().getContentResolver().notifyChange(
+                    WeatherContract.WeatherEntry.CONTENT_URI, null);
+        }
+
+        Bundle result = new Bundle();
+        result.putInt(WeatherContract.WeatherEntry.RESULT_ROWS_INSERTED, inserted);
+        result.putInt(WeatherContract.WeatherEntry.RESULT_ROWS_UPDATED, updated);
+        result.putInt(WeatherContract.WeatherEntry.RESULT_ROWS_UNCHANGED, unchanged);
+        return result;
+    }
+
+    /**
+     * @return true if every column of the cursor's current row holds the same value as the
+     * column of the same name in values.  The cursor's columns must all be keys of values.
+     */
+    private static boolean rowMatches(Cursor cursor, ContentValues values) {
+        for (int i = 0; i < cursor.getColumnCount(); i++) {
+            String column = cursor.getColumnName(i);
+            switch (cursor.getType(i)) {
+                case Cursor.FIELD_TYPE_NULL:
+                    if (values.get(column) != null) return false;
+                    break;
+                case Cursor.FIELD_TYPE_INTEGER: {
+                    Long value = values.getAsLong(column);
+                    if (value == null || value != cursor.getLong(i)) return false;
+                    break;
+                }
+                case Cursor.FIELD_TYPE_FLOAT: {
+                    Double value = values.getAsDouble(column);
+                    if (value == null || Double.compare(value, cursor.getDouble(i)) != 0) return false;
+                    break;
+                }
+                default:
+                    if (!cursor.getString(i).equals(values.getAsString(column))) return false;
+                    break;
+            }
+        }
+        return true;
+    }
+
     // You do not need to call this method. This is a method specifically to assist the testing
     // framework in running smoothly. You can read more at:
     // http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
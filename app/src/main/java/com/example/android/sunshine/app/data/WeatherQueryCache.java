@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the results of the weather-by-location queries, so the list, the widget, the
+ * watch update and the notification don't each run the same join against SQLite.  Results
+ * are kept as immutable snapshots and handed out as a fresh MatrixCursor on every hit.
+ *
+ * Entries are dropped per location setting when that location's weather or location row is
+ * written; WeatherProvider works out the affected locations for every write it makes.  Every
+ * invalidation bumps a generation number; a result read before an invalidation is never
+ * stored after it, so a query racing a write can't put stale rows back.
+ */
+final class WeatherQueryCache {
+    // A handful of locations times the few projections that ask for them.
+    private static final int MAX_ENTRIES = 32;
+    // A forecast is two weeks; anything much bigger isn't what this cache is for.
+    static final int MAX_ROWS = 64;
+
+    /**
+     * The rows of one query, copied out of its cursor.
+     */
+    static final class Snapshot {
+        final String locationSetting;
+        final String[] columnNames;
+        final Object[][] rows;
+
+        private Snapshot(String locationSetting, String[] columnNames, Object[][] rows) {
+            this.locationSetting = locationSetting;
+            this.columnNames = columnNames;
+            this.rows = rows;
+        }
+
+        Cursor newCursor() {
+            MatrixCursor cursor = new MatrixCursor(columnNames, rows.length);
+            for (Object[] row : rows) {
+                cursor.addRow(row);
+            }
+            return cursor;
+        }
+    }
+
+    private final LinkedHashMap<String, Snapshot> mEntries =
+            new LinkedHashMap<String, Snapshot>(MAX_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+    private long mGeneration;
+    private int mHits;
+    private int mMisses;
+
+    static String key(int match, String locationSetting, long date, String[] projection,
+                      String sortOrder) {
+        return match + "|" + locationSetting + "|" + date + "|" + Arrays.toString(projection)
+                + "|" + sortOrder;
+    }
+
+    /**
+     * Copies the cursor's rows into a snapshot, or returns null if there are too many of them.
+     * Leaves the cursor open.
+     */
+    static Snapshot snapshot(String locationSetting, Cursor cursor) {
+        int count = cursor.getCount();
+        if (count > MAX_ROWS) {
+            return null;
+        }
+        int columnCount = cursor.getColumnCount();
+        Object[][] rows = new Object[count][];
+        cursor.moveToPosition(-1);
+        for (int r = 0; cursor.moveToNext(); r++) {
+            Object[] row = new Object[columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                switch (cursor.getType(c)) {
+                    case Cursor.FIELD_TYPE_NULL:
+                        break;
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        row[c] = cursor.getLong(c);
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        row[c] = cursor.getDouble(c);
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        row[c] = cursor.getBlob(c);
+                        break;
+                    default:
+                        row[c] = cursor.getString(c);
+                        break;
+                }
+            }
+            rows[r] = row;
+        }
+        return new Snapshot(locationSetting, cursor.getColumnNames(), rows);
+    }
+
+    /**
+     * @return a cursor over the cached result, or null on a miss.
+     */
+    synchronized Cursor get(String key) {
+        Snapshot snapshot = mEntries.get(key);
+        if (snapshot == null) {
+            mMisses++;
+            return null;
+        }
+        mHits++;
+        return snapshot.newCursor();
+    }
+
+    /**
+     * Read this before running a query whose result will be passed to {@link #put}.
+     */
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Stores a result, unless the cache has been invalidated since generation was read.
+     */
+    synchronized void put(String key, long generation, Snapshot snapshot) {
+        if (generation == mGeneration) {
+            mEntries.put(key, snapshot);
+        }
+    }
+
+    synchronized void invalidate(String locationSetting) {
+        mGeneration++;
+        Iterator<Snapshot> it = mEntries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().locationSetting.equals(locationSetting)) {
+                it.remove();
+            }
+        }
+    }
+
+    synchronized int getHitCount() {
+        return mHits;
+    }
+
+    synchronized int getMissCount() {
+        return mMisses;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import java.util.ArrayDeque;
+
+/**
+ * A small pool of reusable byte arrays for reading response bodies into, so that a sync
+ * doesn't allocate a fresh body buffer (plus every intermediate growth step) each time.
+ *
+ * Buffers that had to grow while in use are returned at their grown size, so after the first
+ * few syncs the pool holds arrays big enough for a whole forecast.
+ */
+public class ByteBufferPool {
+    private final int mInitialSize;
+    private final int mMaxPooled;
+    private final ArrayDeque<byte[]> mPool;
+
+    public ByteBufferPool(int initialSize, int maxPooled) {
+        mInitialSize = initialSize;
+        mMaxPooled = maxPooled;
+        mPool = new ArrayDeque<byte[]>(maxPooled);
+    }
+
+    public synchronized byte[] acquire() {
+        byte[] buffer = mPool.pollFirst();
+        return buffer != null ? buffer : new byte[mInitialSize];
+    }
+
+    /**
+     * Returns a buffer that can hold at least minSize bytes, keeping the first length bytes of
+     * the old one.  The old buffer must not be used afterwards.
+     */
+    public byte[] grow(byte[] buffer, int length, int minSize) {
+        byte[] grown = new byte[Math.max(minSize, buffer.length * 2)];
+        System.arraycopy(buffer, 0, grown, 0, length);
+        return grown;
+    }
+
+    public synchronized void release(byte[] buffer) {
+        if (buffer == null || mPool.size() >= mMaxPooled) {
+            return;
+        }
+        // Keep the biggest buffers at the front so they're handed out first.
+        if (mPool.isEmpty() || buffer.length >= mPool.peekFirst().length) {
+            mPool.addFirst(buffer);
+        } else {
+            mPool.addLast(buffer);
+        }
+    }
+}
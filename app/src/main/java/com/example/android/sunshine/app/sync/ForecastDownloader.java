@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Downloads forecast responses, using the validators kept in a {@link ForecastResponseCache}
+ * to turn repeated requests for an unchanged forecast into a bodiless 304.
+ *
+ * Responses are requested compressed and decoded into a buffer borrowed from a
+ * {@link ByteBufferPool}; the parser and the disk cache both work off that buffer directly.
+ */
+public class ForecastDownloader {
+    // A 16 day forecast is around 8 KiB uncompressed, so this rarely needs to grow.
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 4;
+
+    private final ForecastResponseCache mCache;
+    private final ByteBufferPool mBufferPool =
+            new ByteBufferPool(INITIAL_BUFFER_SIZE, MAX_POOLED_BUFFERS);
+
+    /**
+     * The outcome of a single request.  Either the server sent a new body, or it told us the
+     * cached one is still current.  Close it once the body has been parsed so its buffer can
+     * go back to the pool.
+     */
+    public class Response implements Closeable {
+        private final String mCacheKey;
+        private final boolean mNotModified;
+        private final ForecastResponseCache.Entry mCachedEntry;
+        private byte[] mBody;
+        private final int mBodyLength;
+        private final long mBytesOnWire;
+        private final String mETag;
+        private final String mLastModified;
+
+        private Response(String cacheKey, ForecastResponseCache.Entry cachedEntry) {
+            mCacheKey = cacheKey;
+            mNotModified = true;
+            mCachedEntry = cachedEntry;
+            mBody = null;
+            mBodyLength = 0;
+            mBytesOnWire = 0;
+            mETag = null;
+            mLastModified = null;
+        }
+
+        private Response(String cacheKey, byte[] body, int bodyLength, long bytesOnWire,
+                         String eTag, String lastModified) {
+            mCacheKey = cacheKey;
+            mNotModified = false;
+            mCachedEntry = null;
+            mBody = body;
+            mBodyLength = bodyLength;
+            mBytesOnWire = bytesOnWire;
+            mETag = eTag;
+            mLastModified = lastModified;
+        }
+
+        /**
+         * @return true if the server answered 304 and the body comes from the disk cache.
+         */
+        public boolean isNotModified() {
+            return mNotModified;
+        }
+
+        /**
+         * @return the number of decoded body bytes received for this request.
+         */
+        public int getBytesReceived() {
+            return mBodyLength;
+        }
+
+        /**
+         * @return the number of body bytes that came over the network, before decompression.
+         */
+        public long getBytesOnWire() {
+            return mBytesOnWire;
+        }
+
+        /**
+         * Opens the response body, reading it from the disk cache on a 304.
+         */
+        public InputStream openBody() throws IOException {
+            if (mNotModified) {
+                return mCachedEntry.openBody();
+            }
+            return new ByteArrayInputStream(mBody, 0, mBodyLength);
+        }
+
+        /**
+         * Stores a freshly downloaded body and its validators so the next request for the same
+         * location can be conditional.  Call this only once the body has been parsed
+         * successfully; otherwise we'd keep getting 304s for a response we can't use.
+         */
+        public void commit() {
+            if (!mNotModified && mBody != null) {
+                mCache.put(mCacheKey, mETag, mLastModified, mBody, 0, mBodyLength);
+            }
+        }
+
+        /**
+         * Hands the body buffer back to the pool.  Streams from {@link #openBody()} must not be
+         * read after this.
+         */
+        @Override
+        public void close() {
+            if (mBody != null) {
+                mBufferPool.release(mBody);
+                mBody = null;
+            }
+        }
+    }
+
+    public ForecastDownloader(ForecastResponseCache cache) {
+        mCache = cache;
+    }
+
+    /**
+     * Requests the given URL, conditionally if we have a cached response for cacheKey.
+     *
+     * @throws IOException if the request failed or the server answered with an error status
+     */
+    public Response fetch(URL url, String cacheKey) throws IOException {
+        ForecastResponseCache.Entry cachedEntry = mCache.get(cacheKey);
+
+        HttpURLConnection urlConnection = null;
+        try {
+            urlConnection = (HttpURLConnection) url.openConnection();
+            urlConnection.setRequestMethod("GET");
+            // We do our own caching, keep any platform response cache out of the way.
+            urlConnection.setUseCaches(false);
+            // Asking for an encoding ourselves turns off HttpURLConnection's transparent gzip
+            // handling, which is what lets us see (and count) the compressed bytes.
+            urlConnection.setRequestProperty("Accept-Encoding", "gzip, deflate");
+            if (cachedEntry != null) {
+                if (cachedEntry.eTag != null) {
+                    urlConnection.setRequestProperty("If-None-Match", cachedEntry.eTag);
+                }
+                if (cachedEntry.lastModified != null) {
+                    urlConnection.setRequestProperty("If-Modified-Since", cachedEntry.lastModified);
+                }
+            }
+            urlConnection.connect();
+
+            int responseCode = urlConnection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                if (cachedEntry == null) {
+                    throw new IOException("Server answered 304 to an unconditional request");
+                }
+                return new Response(cacheKey, cachedEntry);
+            }
+
+            // Throws FileNotFoundException and friends for error statuses.
+            CountingInputStream wireStream = new CountingInputStream(urlConnection.getInputStream());
+            InputStream inputStream = decode(wireStream, urlConnection.getContentEncoding());
+            byte[] buffer = mBufferPool.acquire();
+            int length = 0;
+            try {
+                int read;
+                while ((read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+                    length += read;
+                    if (length == buffer.length) {
+                        buffer = mBufferPool.grow(buffer, length, length + 1);
+                    }
+                }
+            } catch (IOException e) {
+                mBufferPool.release(buffer);
+                throw e;
+            } finally {
+                inputStream.close();
+            }
+
+            return new Response(cacheKey, buffer, length, wireStream.getCount(),
+                    urlConnection.getHeaderField("ETag"),
+                    urlConnection.getHeaderField("Last-Modified"));
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+    }
+
+    private static InputStream decode(InputStream in, String contentEncoding) throws IOException {
+        if ("gzip".equalsIgnoreCase(contentEncoding)) {
+            return new GZIPInputStream(in);
+        } else if ("deflate".equalsIgnoreCase(contentEncoding)) {
+            return new InflaterInputStream(in);
+        }
+        return in;
+    }
+
+    /**
+     * Counts the bytes read through it, so we know what actually crossed the network.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long byteCount) throws IOException {
+            long skipped = super.skip(byteCount);
+            mCount += skipped;
+            return skipped;
+        }
+    }
+}
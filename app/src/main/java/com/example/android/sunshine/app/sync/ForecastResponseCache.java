@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A small on-disk cache of the last forecast response for each location query, together with
+ * the HTTP validators (ETag and Last-Modified) the server sent with it.
+ *
+ * Each entry is two files named after a hash of the location query: the raw response body and
+ * a tiny metadata file holding the validators.  The total size of the bodies is bounded; when a
+ * new entry pushes it over the limit the least recently used entries are evicted.
+ */
+public class ForecastResponseCache {
+    private static final String LOG_TAG = ForecastResponseCache.class.getSimpleName();
+
+    private static final String BODY_SUFFIX = ".body";
+    private static final String META_SUFFIX = ".meta";
+
+    private final File mDirectory;
+    private final long mMaxSizeBytes;
+
+    /**
+     * A cached response.  The body is read lazily from disk.
+     */
+    public static class Entry {
+        public final String eTag;
+        public final String lastModified;
+        private final File mBodyFile;
+
+        Entry(String eTag, String lastModified, File bodyFile) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            mBodyFile = bodyFile;
+        }
+
+        public long getBodyLength() {
+            return mBodyFile.length();
+        }
+
+        public InputStream openBody() throws IOException {
+            return new BufferedInputStream(new FileInputStream(mBodyFile));
+        }
+    }
+
+    public ForecastResponseCache(File directory, long maxSizeBytes) {
+        mDirectory = directory;
+        mMaxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * @return the cached response for this location query, or null if there isn't one.
+     */
+    public synchronized Entry get(String locationQuery) {
+        String name = fileNameFor(locationQuery);
+        File bodyFile = new File(mDirectory, name + BODY_SUFFIX);
+        File metaFile = new File(mDirectory, name + META_SUFFIX);
+        if (!bodyFile.exists() || !metaFile.exists()) {
+            // Validators without a body (or the other way around) are useless to us, since we
+            // couldn't serve anything on a 304.
+            bodyFile.delete();
+            metaFile.delete();
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(metaFile)));
+            String key = in.readUTF();
+            if (!key.equals(locationQuery)) {
+                // Hash collision; treat it as a miss.
+                return null;
+            }
+            String eTag = in.readUTF();
+            String lastModified = in.readUTF();
+
+            // Bump the modification time so eviction is least recently used, not oldest first.
+            bodyFile.setLastModified(System.currentTimeMillis());
+            return new Entry(eTag.length() > 0 ? eTag : null,
+                    lastModified.length() > 0 ? lastModified : null, bodyFile);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error reading cache entry for " + locationQuery, e);
+            bodyFile.delete();
+            metaFile.delete();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Stores a response body and its validators for this location query, replacing any
+     * previous entry, then trims the cache back down to its size limit.
+     */
+    public synchronized void put(String locationQuery, String eTag, String lastModified,
+                                 byte[] body, int offset, int length) {
+        if (length > mMaxSizeBytes) {
+            remove(locationQuery);
+            return;
+        }
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            Log.e(LOG_TAG, "Unable to create cache directory " + mDirectory);
+            return;
+        }
+
+        String name = fileNameFor(locationQuery);
+        File bodyFile = new File(mDirectory, name + BODY_SUFFIX);
+        File metaFile = new File(mDirectory, name + META_SUFFIX);
+
+        FileOutputStream bodyOut = null;
+        DataOutputStream metaOut = null;
+        try {
+            bodyOut = new FileOutputStream(bodyFile);
+            bodyOut.write(body, offset, length);
+            bodyOut.close();
+            bodyOut = null;
+
+            metaOut = new DataOutputStream(new FileOutputStream(metaFile));
+            metaOut.writeUTF(locationQuery);
+            metaOut.writeUTF(eTag == null ? "" : eTag);
+            metaOut.writeUTF(lastModified == null ? "" : lastModified);
+            metaOut.close();
+            metaOut = null;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error writing cache entry for " + locationQuery, e);
+            closeQuietly(bodyOut);
+            closeQuietly(metaOut);
+            bodyFile.delete();
+            metaFile.delete();
+            return;
+        }
+
+        trimToSize();
+    }
+
+    public synchronized void remove(String locationQuery) {
+        String name = fileNameFor(locationQuery);
+        new File(mDirectory, name + BODY_SUFFIX).delete();
+        new File(mDirectory, name + META_SUFFIX).delete();
+    }
+
+    /**
+     * @return the total size of all cached bodies, in bytes.
+     */
+    public synchronized long size() {
+        long size = 0;
+        File[] bodies = listBodies();
+        for (File body : bodies) {
+            size += body.length();
+        }
+        return size;
+    }
+
+    private void trimToSize() {
+        File[] bodies = listBodies();
+        long size = 0;
+        for (File body : bodies) {
+            size += body.length();
+        }
+        if (size <= mMaxSizeBytes) {
+            return;
+        }
+
+        Arrays.sort(bodies, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < bodies.length && size > mMaxSizeBytes; i++) {
+            File body = bodies[i];
+            String bodyName = body.getName();
+            String name = bodyName.substring(0, bodyName.length() - BODY_SUFFIX.length());
+            size -= body.length();
+            body.delete();
+            new File(mDirectory, name + META_SUFFIX).delete();
+        }
+    }
+
+    private File[] listBodies() {
+        File[] bodies = mDirectory.listFiles();
+        if (bodies == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : bodies) {
+            if (file.getName().endsWith(BODY_SUFFIX)) {
+                bodies[count++] = file;
+            }
+        }
+        return Arrays.copyOf(bodies, count);
+    }
+
+    private static String fileNameFor(String locationQuery) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(locationQuery.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // Every Android device ships MD5 and UTF-8, but fall back to something sane anyway.
+            return Integer.toHexString(locationQuery.hashCode());
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error closing stream", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches, parses and stores forecasts for a set of locations.  Each location is synced on a
+ * bounded thread pool, so the wall-clock time of a sync grows with the number of locations
+ * divided by the pool size rather than with the number of locations.  Every location is written
+ * in its own transaction and gets its own {@link SunshineSyncAdapter.LocationStatus}.  Rows
+ * that are identical to what is already stored are not rewritten.  Past days are deleted once
+ * at the end of each sync.
+ */
+public class ForecastSyncEngine {
+    private static final String LOG_TAG = ForecastSyncEngine.class.getSimpleName();
+
+    static final String FORECAST_BASE_URL =
+            "http://api.openweathermap.org/data/2.5/forecast/daily?";
+
+    // Idle pool threads are let go after this long, a sync only happens every few hours.
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final String FORMAT = "json";
+    private static final String UNITS = "metric";
+    private static final int NUM_DAYS = 14;
+
+    private final Context mContext;
+    private final ForecastDownloader mDownloader;
+    private final String mBaseUrl;
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * What happened when syncing one location.
+     */
+    public static class Result {
+        public final String locationSetting;
+        @SunshineSyncAdapter.LocationStatus
+        public final int status;
+        // Number of forecast rows inserted or updated; 0 if nothing changed or the sync failed.
+        public final int rowsWritten;
+        public final int rowsInserted;
+        public final int rowsUpdated;
+        // Rows the server sent that were identical to what we already had.
+        public final int rowsUnchanged;
+
+        Result(String locationSetting, @SunshineSyncAdapter.LocationStatus int status) {
+            this(locationSetting, status, 0, 0, 0);
+        }
+
+        Result(String locationSetting, @SunshineSyncAdapter.LocationStatus int status,
+               int rowsInserted, int rowsUpdated, int rowsUnchanged) {
+            this.locationSetting = locationSetting;
+            this.status = status;
+            this.rowsInserted = rowsInserted;
+            this.rowsUpdated = rowsUpdated;
+            this.rowsUnchanged = rowsUnchanged;
+            this.rowsWritten = rowsInserted + rowsUpdated;
+        }
+    }
+
+    /**
+     * @param context context used to reach the content provider and preferences
+     * @param downloader downloader used for every location
+     * @param baseUrl the forecast endpoint, normally {@link #FORECAST_BASE_URL}
+     * @param poolSize the maximum number of locations fetched at the same time
+     */
+    public ForecastSyncEngine(Context context, ForecastDownloader downloader, String baseUrl,
+                              int poolSize) {
+        mContext = context;
+        mDownloader = downloader;
+        mBaseUrl = baseUrl;
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        mExecutor = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "ForecastSync #" + threadCount.incrementAndGet());
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Syncs every location and waits for all of them to finish.
+     *
+     * @return the result for each location, in the order the locations were given.
+     */
+    public Map<String, Result> syncAll(Collection<String> locationSettings) {
+        Map<String, Result> results = new LinkedHashMap<String, Result>(locationSettings.size());
+
+        // No point paying for a thread hop when there's only one location.
+        if (locationSettings.size() == 1) {
+            String locationSetting = locationSettings.iterator().next();
+            results.put(locationSetting, syncLocation(locationSetting));
+            deleteOldForecasts();
+            return results;
+        }
+
+        List<Future<Result>> futures = new ArrayList<Future<Result>>(locationSettings.size());
+        for (final String locationSetting : locationSettings) {
+            futures.add(mExecutor.submit(new Callable<Result>() {
+                @Override
+                public Result call() {
+                    return syncLocation(locationSetting);
+                }
+            }));
+        }
+
+        int i = 0;
+        for (String locationSetting : locationSettings) {
+            Result result;
+            try {
+                result = futures.get(i++).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result = new Result(locationSetting, SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN);
+            } catch (ExecutionException e) {
+                Log.e(LOG_TAG, "Error syncing " + locationSetting, e.getCause());
+                result = new Result(locationSetting, SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN);
+            }
+            results.put(locationSetting, result);
+        }
+        deleteOldForecasts();
+        return results;
+    }
+
+    /**
+     * Deletes forecasts for days before today, for every location, including ones that are no
+     * longer synced, so we don't build up an endless history.  The date range is searched in the
+     * index behind the weather table's UNIQUE (date, location_id) constraint, which leads with
+     * the date, so this doesn't scan the table.
+     */
+    void deleteOldForecasts() {
+        Time dayTime = new Time();
+        dayTime.setToNow();
+        int julianToday = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+
+        dayTime = new Time();
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
+                new String[] {Long.toString(dayTime.setJulianDay(julianToday - 1))});
+    }
+
+    /**
+     * Fetches, parses and stores the forecast for a single location on the calling thread.
+     */
+    public Result syncLocation(String locationSetting) {
+        long allocatedAtStart = SyncMetrics.AllocationCounter.bytesAllocated();
+        Result result;
+        try {
+            // Construct the URL for the OpenWeatherMap query
+            // Possible parameters are avaiable at OWM's forecast API page, at
+            // http://openweathermap.org/API#forecast
+            final String QUERY_PARAM = "q";
+            final String FORMAT_PARAM = "mode";
+            final String UNITS_PARAM = "units";
+            final String DAYS_PARAM = "cnt";
+            final String APPID_PARAM = "APPID";
+
+            Uri builtUri = Uri.parse(mBaseUrl).buildUpon()
+                    .appendQueryParameter(QUERY_PARAM, locationSetting)
+                    .appendQueryParameter(FORMAT_PARAM, FORMAT)
+                    .appendQueryParameter(UNITS_PARAM, UNITS)
+                    .appendQueryParameter(DAYS_PARAM, Integer.toString(NUM_DAYS))
+                    .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
+                    .build();
+
+            URL url = new URL(builtUri.toString());
+
+            // Ask OpenWeatherMap for the forecast.  If we've fetched this location before the
+            // request is conditional, and an unchanged forecast comes back as a 304.
+            ForecastDownloader.Response response = mDownloader.fetch(url, locationSetting);
+            try {
+                if (response.isNotModified() && hasStoredForecast(locationSetting)) {
+                    // Nothing changed upstream and we still have the rows from last time, so
+                    // there is nothing to parse or write.
+                    Log.d(LOG_TAG, "Sync Complete. Forecast not modified for " + locationSetting);
+                    result = new Result(locationSetting, SunshineSyncAdapter.LOCATION_STATUS_OK);
+                } else {
+                    // Either a new forecast, or a 304 for a location whose rows we no longer
+                    // have, in which case the body comes out of the disk cache.
+                    OwmForecastParser.Forecast forecast;
+                    InputStream body = response.openBody();
+                    try {
+                        forecast = OwmForecastParser.parse(body);
+                    } finally {
+                        body.close();
+                    }
+                    if (forecast.messageCode == HttpURLConnection.HTTP_OK) {
+                        response.commit();
+                    }
+                    result = storeForecast(forecast, locationSetting);
+                }
+            } finally {
+                response.close();
+                long allocatedBytes = allocatedAtStart < 0 ? -1
+                        : SyncMetrics.AllocationCounter.bytesAllocated() - allocatedAtStart;
+                SunshineSyncAdapter.sSyncMetrics.onForecastSynced(locationSetting,
+                        response.getBytesOnWire(), response.getBytesReceived(), allocatedBytes);
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error ", e);
+            // If the code didn't successfully get the weather data, there's no point in attempting
+            // to parse it.
+            result = new Result(locationSetting, SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN);
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, e.getMessage(), e);
+            result = new Result(locationSetting, SunshineSyncAdapter.LOCATION_STATUS_SERVER_INVALID);
+        }
+
+        SunshineSyncAdapter.setLocationStatus(mContext, locationSetting, result.status);
+        return result;
+    }
+
+    /**
+     * Stops the pool threads.  Syncs already running are allowed to finish.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    /**
+     * Take the forecast rows handed to us by {@link OwmForecastParser} and write them to the
+     * database, along with the location they belong to.
+     */
+    private Result storeForecast(OwmForecastParser.Forecast forecast, String locationSetting) {
+        // do we have an error?
+        switch (forecast.messageCode) {
+            case HttpURLConnection.HTTP_OK:
+                break;
+            case HttpURLConnection.HTTP_NOT_FOUND:
+                return new Result(locationSetting, SunshineSyncAdapter.LOCATION_STATUS_INVALID);
+            default:
+                return new Result(locationSetting, SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN);
+        }
+
+        long locationId = addLocation(locationSetting, forecast.cityName,
+                forecast.cityLatitude, forecast.cityLongitude);
+
+        // OWM returns daily forecasts based upon the local time of the city that is being
+        // asked for, which means that we need to know the GMT offset to translate this data
+        // properly.
+
+        // Since this data is also sent in-order and the first day is always the
+        // current day, we're going to take advantage of that to get a nice
+        // normalized UTC date for all of our weather.
+
+        Time dayTime = new Time();
+        dayTime.setToNow();
+
+        // we start at the day returned by local time. Otherwise this is a mess.
+        int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+
+        // now we work exclusively in UTC
+        dayTime = new Time();
+
+        int numDays = forecast.days.size();
+        ContentValues[] cvArray = new ContentValues[numDays];
+        for (int i = 0; i < numDays; i++) {
+            ContentValues weatherValues = forecast.days.get(i);
+
+            // Cheating to convert this to UTC time, which is what we want anyhow
+            long dateTime = dayTime.setJulianDay(julianStartDay + i);
+
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTime);
+            cvArray[i] = weatherValues;
+        }
+
+        // add to database, leaving rows that haven't changed since the last sync alone
+        int inserted = 0;
+        int updated = 0;
+        int unchanged = 0;
+        if ( numDays > 0 ) {
+            Bundle extras = new Bundle();
+            extras.putParcelableArray(WeatherContract.WeatherEntry.EXTRA_WEATHER_VALUES, cvArray);
+            Bundle counts = mContext.getContentResolver().call(
+                    WeatherContract.WeatherEntry.CONTENT_URI,
+                    WeatherContract.WeatherEntry.METHOD_UPSERT, null, extras);
+            inserted = counts.getInt(WeatherContract.WeatherEntry.RESULT_ROWS_INSERTED);
+            updated = counts.getInt(WeatherContract.WeatherEntry.RESULT_ROWS_UPDATED);
+            unchanged = counts.getInt(WeatherContract.WeatherEntry.RESULT_ROWS_UNCHANGED);
+        }
+        Log.d(LOG_TAG, "Sync Complete for " + locationSetting + ". " + inserted + " inserted, "
+                + updated + " updated, " + unchanged + " unchanged");
+        return new Result(locationSetting, SunshineSyncAdapter.LOCATION_STATUS_OK,
+                inserted, updated, unchanged);
+    }
+
+    /**
+     * @return true if the database already holds forecast rows from today onward for this
+     * location.
+     */
+    private boolean hasStoredForecast(String locationSetting) {
+        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                locationSetting, System.currentTimeMillis());
+        Cursor cursor = mContext.getContentResolver().query(weatherForLocationUri,
+                new String[]{WeatherContract.WeatherEntry.COLUMN_DATE}, null, null, null);
+        if (cursor == null) {
+            return false;
+        }
+        boolean hasRows = cursor.moveToFirst();
+        cursor.close();
+        return hasRows;
+    }
+
+    /**
+     * Helper method to handle insertion of a new location in the weather database.
+     *
+     * @param locationSetting The location string used to request updates from the server.
+     * @param cityName A human-readable city name, e.g "Mountain View"
+     * @param lat the latitude of the city
+     * @param lon the longitude of the city
+     * @return the row ID of the added location.
+     */
+    long addLocation(String locationSetting, String cityName, double lat, double lon) {
+        long locationId;
+
+        // First, check if the location with this city name exists in the db
+        Cursor locationCursor = mContext.getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                new String[]{WeatherContract.LocationEntry._ID},
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{locationSetting},
+                null);
+
+        if (locationCursor.moveToFirst()) {
+            int locationIdIndex = locationCursor.getColumnIndex(WeatherContract.LocationEntry._ID);
+            locationId = locationCursor.getLong(locationIdIndex);
+        } else {
+            // Now that the content provider is set up, inserting rows of data is pretty simple.
+            // First create a ContentValues object to hold the data you want to insert.
+            ContentValues locationValues = new ContentValues();
+
+            // Then add the data, along with the corresponding name of the data type,
+            // so the content provider knows what kind of value is being inserted.
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, cityName);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, lat);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, lon);
+
+            // Finally, insert location data into the database.
+            Uri insertedUri = mContext.getContentResolver().insert(
+                    WeatherContract.LocationEntry.CONTENT_URI,
+                    locationValues
+            );
+
+            // The resulting URI contains the ID for the row.  Extract the locationId from the Uri.
+            locationId = ContentUris.parseId(insertedUri);
+        }
+
+        locationCursor.close();
+        // Wait, that worked?  Yes!
+        return locationId;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.os.Build;
+import android.os.Debug;
+import android.util.Log;
+
+/**
+ * Hook for finding out what a forecast sync cost.  Install one with
+ * {@link SunshineSyncAdapter#setSyncMetrics(SyncMetrics)}; the default just logs.
+ */
+public interface SyncMetrics {
+
+    /**
+     * Reported once per location fetched.
+     *
+     * @param locationQuery the location that was synced
+     * @param bytesOnWire body bytes received from the network, before decompression.  0 on a 304.
+     * @param bodyBytes body bytes after decompression.  0 on a 304.
+     * @param allocatedBytes bytes the runtime allocated during the sync, or -1 if the platform
+     *                       doesn't tell us.  This is process wide, so treat it as an estimate.
+     */
+    void onForecastSynced(String locationQuery, long bytesOnWire, long bodyBytes, long allocatedBytes);
+
+    SyncMetrics LOG = new SyncMetrics() {
+        @Override
+        public void onForecastSynced(String locationQuery, long bytesOnWire, long bodyBytes,
+                                     long allocatedBytes) {
+            Log.d("SyncMetrics", locationQuery + ": " + bytesOnWire + " bytes on the wire, "
+                    + bodyBytes + " bytes decoded, " + allocatedBytes + " bytes allocated");
+        }
+    };
+
+    /**
+     * Reads the runtime's running total of allocated bytes, where available.
+     */
+    class AllocationCounter {
+        private static final String STAT_BYTES_ALLOCATED = "art.gc.bytes-allocated";
+
+        private AllocationCounter() {
+        }
+
+        /**
+         * @return the total bytes allocated so far, or -1 if unavailable.
+         */
+        public static long bytesAllocated() {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+                return -1;
+            }
+            String stat = Debug.getRuntimeStat(STAT_BYTES_ALLOCATED);
+            if (stat == null) {
+                return -1;
+            }
+            try {
+                return Long.parseLong(stat);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import java.nio.ByteBuffer;
+import java.util.TimeZone;
+
+/**
+ * Encodes the forecast sent to the watch as one small byte array.  The watch face decodes it
+ * with ForecastPayload in the sunshinewear module; the two have to agree on this layout
+ * (big-endian):
+ *
+ * <pre>
+ *   byte   version, {@link #VERSION}
+ *   byte   flags, {@link #FLAG_METRIC}
+ *   int    first day, as days since 1970-01-01 in the phone's time zone
+ *   byte   number of days
+ *   then for each day:
+ *     byte   days after the first day
+ *     short  weather id
+ *     short  high, in tenths of a degree Celsius
+ *     short  low, in tenths of a degree Celsius
+ * </pre>
+ *
+ * Nothing time-dependent other than the forecast's own days goes in, so the same forecast
+ * always encodes to the same bytes and the data layer only syncs real changes.
+ */
+final class WearForecastPayload {
+    // The DataItem the payload is published as.
+    static final String PATH = "/forecast";
+
+    static final int VERSION = 1;
+    // The user wants temperatures in Celsius.
+    static final int FLAG_METRIC = 1;
+
+    private static final int HEADER_SIZE = 1 + 1 + 4 + 1;
+    private static final int DAY_SIZE = 1 + 2 + 2 + 2;
+    static final int MAX_DAYS = 14;
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    private final boolean mMetric;
+    private final int[] mDays = new int[MAX_DAYS];
+    private final int[] mWeatherIds = new int[MAX_DAYS];
+    private final short[] mMaxTemps = new short[MAX_DAYS];
+    private final short[] mMinTemps = new short[MAX_DAYS];
+    private int mCount;
+
+    WearForecastPayload(boolean metric) {
+        mMetric = metric;
+    }
+
+    /**
+     * @return the day dateMillis falls on, as days since the epoch in the default time zone.
+     */
+    static int toEpochDay(long dateMillis) {
+        long local = dateMillis + TimeZone.getDefault().getOffset(dateMillis);
+        return (int) Math.floor((double) local / DAY_IN_MILLIS);
+    }
+
+    /**
+     * Adds a day.  Days must be added in ascending order, at most {@link #MAX_DAYS} of them
+     * and no more than 255 days after the first.
+     */
+    WearForecastPayload add(long dateMillis, int weatherId, double maxTemp, double minTemp) {
+        if (mCount == MAX_DAYS) {
+            throw new IllegalStateException("Payload already has " + MAX_DAYS + " days");
+        }
+        int day = toEpochDay(dateMillis);
+        if (mCount > 0 && (day <= mDays[mCount - 1] || day - mDays[0] > 255)) {
+            throw new IllegalArgumentException("Day " + day + " is out of order or range");
+        }
+        mDays[mCount] = day;
+        mWeatherIds[mCount] = weatherId;
+        mMaxTemps[mCount] = toTenths(maxTemp);
+        mMinTemps[mCount] = toTenths(minTemp);
+        mCount++;
+        return this;
+    }
+
+    private static short toTenths(double temperature) {
+        long tenths = Math.round(temperature * 10);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, tenths));
+    }
+
+    int size() {
+        return mCount;
+    }
+
+    byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + mCount * DAY_SIZE);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) (mMetric ? FLAG_METRIC : 0));
+        buffer.putInt(mCount > 0 ? mDays[0] : 0);
+        buffer.put((byte) mCount);
+        for (int i = 0; i < mCount; i++) {
+            buffer.put((byte) (mDays[i] - mDays[0]));
+            buffer.putShort((short) mWeatherIds[i]);
+            buffer.putShort(mMaxTemps[i]);
+            buffer.putShort(mMinTemps[i]);
+        }
+        return buffer.array();
+    }
+}
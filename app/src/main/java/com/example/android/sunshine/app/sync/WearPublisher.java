@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.Arrays;
+
+/**
+ * Sends forecast payloads to the watch over one long-lived connection to the Wearable data
+ * layer.  The connection is made on the first publish and dropped again after
+ * {@code idleDisconnectMillis} with nothing to send.
+ *
+ * Payloads published while connecting, or while the previous one is still in flight, wait
+ * in a queue of one: a newer payload replaces the waiting one, since only the latest forecast
+ * matters.  A payload equal to the last one the watch accepted isn't sent at all, unless
+ * another one is still on its way.
+ */
+final class WearPublisher {
+    private static final String LOG_TAG = WearPublisher.class.getSimpleName();
+
+    /**
+     * The connection to the data layer.  Reports back by calling {@link #onConnected()},
+     * {@link #onConnectionFailed()} and {@link #onPutResult(byte[], boolean)}, from any thread.
+     */
+    interface Transport {
+        void connect(WearPublisher publisher);
+
+        void disconnect();
+
+        boolean isConnected();
+
+        void put(byte[] payload, WearPublisher publisher);
+    }
+
+    private final Transport mTransport;
+    private final long mIdleDisconnectMillis;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mDisconnectIfIdle = new Runnable() {
+        @Override
+        public void run() {
+            disconnectIfIdle();
+        }
+    };
+
+    private byte[] mPending;
+    private boolean mInFlight;
+    private boolean mConnecting;
+    private byte[] mLastSent;
+
+    private int mQueuedCount;
+    private int mCoalescedCount;
+    private int mSentCount;
+    private int mFailedCount;
+
+    WearPublisher(Transport transport, long idleDisconnectMillis) {
+        mTransport = transport;
+        mIdleDisconnectMillis = idleDisconnectMillis;
+    }
+
+    /**
+     * Queues a payload for the watch, connecting first if need be.
+     *
+     * @return false if the payload is the one the watch already has, so nothing was queued.
+     */
+    synchronized boolean publish(byte[] payload) {
+        // With a put in flight the watch may be about to hold something else, so only a
+        // publisher with nothing queued or in flight knows what the watch has.
+        if (mPending == null && !mInFlight && Arrays.equals(payload, mLastSent)) {
+            return false;
+        }
+        mQueuedCount++;
+        if (mPending != null) {
+            mCoalescedCount++;
+        }
+        mPending = payload;
+        mHandler.removeCallbacks(mDisconnectIfIdle);
+
+        if (mTransport.isConnected()) {
+            sendPending();
+        } else if (!mConnecting) {
+            mConnecting = true;
+            mTransport.connect(this);
+        }
+        return true;
+    }
+
+    private synchronized void sendPending() {
+        if (mPending == null || mInFlight) {
+            return;
+        }
+        byte[] payload = mPending;
+        mPending = null;
+        mInFlight = true;
+        mTransport.put(payload, this);
+    }
+
+    synchronized void onConnected() {
+        mConnecting = false;
+        sendPending();
+        if (!mInFlight) {
+            scheduleIdleDisconnect();
+        }
+    }
+
+    synchronized void onConnectionFailed() {
+        mConnecting = false;
+        if (mPending != null) {
+            mFailedCount++;
+            mPending = null;
+        }
+    }
+
+    synchronized void onPutResult(byte[] payload, boolean success) {
+        mInFlight = false;
+        if (success) {
+            mSentCount++;
+            mLastSent = payload;
+        } else {
+            mFailedCount++;
+        }
+        if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+            Log.d(LOG_TAG, (success ? "Sent " : "Failed to send ") + payload.length
+                    + " bytes; queued " + mQueuedCount + ", coalesced " + mCoalescedCount
+                    + ", sent " + mSentCount + ", failed " + mFailedCount);
+        }
+
+        if (mPending != null) {
+            sendPending();
+        } else {
+            scheduleIdleDisconnect();
+        }
+    }
+
+    private void scheduleIdleDisconnect() {
+        mHandler.removeCallbacks(mDisconnectIfIdle);
+        mHandler.postDelayed(mDisconnectIfIdle, mIdleDisconnectMillis);
+    }
+
+    private synchronized void disconnectIfIdle() {
+        if (mPending == null && !mInFlight && !mConnecting && mTransport.isConnected()) {
+            mTransport.disconnect();
+        }
+    }
+
+    synchronized int getQueuedCount() {
+        return mQueuedCount;
+    }
+
+    synchronized int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    synchronized int getSentCount() {
+        return mSentCount;
+    }
+
+    synchronized int getFailedCount() {
+        return mFailedCount;
+    }
+
+    /**
+     * Publishes payloads as the data of the {@link WearForecastPayload#PATH} DataItem.
+     */
+    static final class GoogleApiTransport implements Transport,
+            GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener {
+        private final GoogleApiClient mGoogleApiClient;
+        private volatile WearPublisher mPublisher;
+
+        GoogleApiTransport(Context context) {
+            mGoogleApiClient = new GoogleApiClient.Builder(context.getApplicationContext())
+                    .addApi(Wearable.API)
+                    .addConnectionCallbacks(this)
+                    .addOnConnectionFailedListener(this)
+                    .build();
+        }
+
+        @Override
+        public void connect(WearPublisher publisher) {
+            mPublisher = publisher;
+            mGoogleApiClient.connect();
+        }
+
+        @Override
+        public void disconnect() {
+            mGoogleApiClient.disconnect();
+        }
+
+        @Override
+        public boolean isConnected() {
+            return mGoogleApiClient.isConnected();
+        }
+
+        @Override
+        public void put(final byte[] payload, final WearPublisher publisher) {
+            PutDataRequest putDataReq = PutDataRequest.create(WearForecastPayload.PATH)
+                    .setData(payload)
+                    .setUrgent();
+            Wearable.DataApi.putDataItem(mGoogleApiClient, putDataReq)
+                    .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
+                        @Override
+                        public void onResult(@NonNull DataApi.DataItemResult dataItemResult) {
+                            if (!dataItemResult.getStatus().isSuccess()) {
+                                Log.e(LOG_TAG, "Failed to send the forecast to the watch: "
+                                        + dataItemResult.getStatus());
+                            }
+                            publisher.onPutResult(payload, dataItemResult.getStatus().isSuccess());
+                        }
+                    });
+        }
+
+        @Override
+        public void onConnected(@Nullable Bundle bundle) {
+            mPublisher.onConnected();
+        }
+
+        @Override
+        public void onConnectionSuspended(int cause) {
+            // The client reconnects by itself; a put in flight reports its own failure.
+        }
+
+        @Override
+        public void onConnectionFailed(@NonNull ConnectionResult connectionResult) {
+            Log.e(LOG_TAG, "Couldn't connect to the data layer: " + connectionResult);
+            mPublisher.onConnectionFailed();
+        }
+    }
+}
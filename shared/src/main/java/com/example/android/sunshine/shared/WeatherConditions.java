@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * Maps OpenWeatherMap condition ids to the handful of conditions Sunshine has artwork for,
+ * through a table indexed by id.  Both the phone app and the watch face compile this file, and
+ * each keeps its own condition-indexed tables of drawables.
+ *
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public final class WeatherConditions {
+    public static final int UNKNOWN = -1;
+    public static final int STORM = 0;
+    public static final int LIGHT_RAIN = 1;
+    public static final int RAIN = 2;
+    public static final int SNOW = 3;
+    public static final int FOG = 4;
+    public static final int CLEAR = 5;
+    public static final int LIGHT_CLOUDS = 6;
+    public static final int CLOUDS = 7;
+    public static final int CONDITION_COUNT = 8;
+
+    // The range of ids OpenWeatherMap uses; everything outside it is UNKNOWN.
+    public static final int MIN_WEATHER_ID = 200;
+    public static final int MAX_WEATHER_ID = 999;
+
+    // The names the art packs use for each condition's image, indexed by condition.
+    private static final String[] ART_NAMES = {
+            "storm", "light_rain", "rain", "snow", "fog", "clear", "light_clouds", "clouds"
+    };
+
+    private static final byte[] CONDITIONS = new byte[MAX_WEATHER_ID - MIN_WEATHER_ID + 1];
+
+    static {
+        fill(MIN_WEATHER_ID, MAX_WEATHER_ID, UNKNOWN);
+        fill(200, 232, STORM);
+        fill(300, 321, LIGHT_RAIN);
+        fill(500, 504, RAIN);
+        fill(511, 511, SNOW);
+        fill(520, 531, RAIN);
+        fill(600, 622, SNOW);
+        fill(701, 761, FOG);
+        fill(781, 781, STORM);
+        fill(800, 800, CLEAR);
+        fill(801, 801, LIGHT_CLOUDS);
+        fill(802, 804, CLOUDS);
+    }
+
+    private WeatherConditions() {
+    }
+
+    private static void fill(int fromId, int toId, int condition) {
+        for (int id = fromId; id <= toId; id++) {
+            CONDITIONS[id - MIN_WEATHER_ID] = (byte) condition;
+        }
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return one of the condition constants, or UNKNOWN if Sunshine has no artwork for it.
+     */
+    public static int getCondition(int weatherId) {
+        if (weatherId < MIN_WEATHER_ID || weatherId > MAX_WEATHER_ID) {
+            return UNKNOWN;
+        }
+        return CONDITIONS[weatherId - MIN_WEATHER_ID];
+    }
+
+    /**
+     * @return the name of the condition's image in an art pack.
+     */
+    public static String getArtName(int condition) {
+        return ART_NAMES[condition];
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.app;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+public class TestForecastPayload extends AndroidTestCase {
+    public static final String LOG_TAG = TestForecastPayload.class.getSimpleName();
+
+    // 2017-03-11
+    static final int FIRST_DAY = 17236;
+
+    // What the phone's WearForecastPayload encodes for a metric forecast of 25.0/16.0 with
+    // weather id 800 on FIRST_DAY and 21.3/8.7 with 501 the day after.  TestWearForecastPayload
+    // in the app checks the same bytes.
+    static final byte[] PAYLOAD = {
+            1, 1, 0x00, 0x00, 0x43, 0x54, 2,
+            0, 0x03, 0x20, 0x00, (byte) 0xfa, 0x00, (byte) 0xa0,
+            1, 0x01, (byte) 0xf5, 0x00, (byte) 0xd5, 0x00, 0x57
+    };
+
+    private static final int BENCHMARK_ITERATIONS = 100000;
+
+    public void testDecode() {
+        ForecastPayload payload = ForecastPayload.decode(PAYLOAD);
+        assertTrue(payload.metric);
+        assertEquals(2, payload.size());
+
+        assertEquals(0, payload.indexOfDay(FIRST_DAY));
+        assertEquals(800, payload.getWeatherId(0));
+        assertEquals(25.0, payload.getMaxTemp(0), 0.001);
+        assertEquals(16.0, payload.getMinTemp(0), 0.001);
+
+        assertEquals(1, payload.indexOfDay(FIRST_DAY + 1));
+        assertEquals(501, payload.getWeatherId(1));
+        assertEquals(21.3, payload.getMaxTemp(1), 0.001);
+        assertEquals(8.7, payload.getMinTemp(1), 0.001);
+
+        assertEquals(-1, payload.indexOfDay(FIRST_DAY + 2));
+    }
+
+    public void testRejectsBadPayloads() {
+        assertNull(ForecastPayload.decode(null));
+        assertNull(ForecastPayload.decode(new byte[0]));
+        assertNull(ForecastPayload.decode(Arrays.copyOf(PAYLOAD, PAYLOAD.length - 1)));
+
+        byte[] futureVersion = PAYLOAD.clone();
+        futureVersion[0] = ForecastPayload.VERSION + 1;
+        assertNull(ForecastPayload.decode(futureVersion));
+    }
+
+    public void testToEpochDay() {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        long firstDayMillis = FIRST_DAY * 24L * 60 * 60 * 1000;
+        assertEquals(FIRST_DAY, ForecastPayload.toEpochDay(firstDayMillis, utc));
+        assertEquals(FIRST_DAY - 1, ForecastPayload.toEpochDay(firstDayMillis - 1, utc));
+        // 23:00 UTC is already the next day in Paris.
+        assertEquals(FIRST_DAY + 1, ForecastPayload.toEpochDay(firstDayMillis + 23 * 60 * 60 * 1000,
+                TimeZone.getTimeZone("Europe/Paris")));
+    }
+
+    public void testBenchmarkDecode() {
+        // Two weeks, as the phone sends.
+        byte[] twoWeeks = new byte[7 + 14 * 7];
+        System.arraycopy(PAYLOAD, 0, twoWeeks, 0, 7);
+        twoWeeks[6] = 14;
+        for (int i = 0; i < 14; i++) {
+            System.arraycopy(PAYLOAD, 7, twoWeeks, 7 + i * 7, 7);
+            twoWeeks[7 + i * 7] = (byte) i;
+        }
+        assertEquals(14, ForecastPayload.decode(twoWeeks).size());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            ForecastPayload.decode(twoWeeks);
+        }
+        long nanos = (System.nanoTime() - start) / BENCHMARK_ITERATIONS;
+        Log.d(LOG_TAG, "Decoded a " + twoWeeks.length + " byte, 14 day payload in " + nanos + " ns");
+    }
+}
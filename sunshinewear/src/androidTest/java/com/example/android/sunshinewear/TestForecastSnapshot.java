@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.app;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+public class TestForecastSnapshot extends AndroidTestCase {
+    public static final String LOG_TAG = TestForecastSnapshot.class.getSimpleName();
+
+    private static final String FILE_NAME = "forecast_snapshot.bin";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        new File(mContext.getFilesDir(), FILE_NAME).delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        new File(mContext.getFilesDir(), FILE_NAME).delete();
+        super.tearDown();
+    }
+
+    public void testReadWithoutSnapshot() {
+        assertNull(ForecastSnapshot.read(mContext));
+    }
+
+    public void testWriteThenRead() {
+        ForecastSnapshot.fromBytes(new byte[]{1, 0, 0, 0, 0, 0, 0}).write(mContext);
+        ForecastSnapshot.fromBytes(TestForecastPayload.PAYLOAD).write(mContext);
+
+        long start = System.nanoTime();
+        ForecastSnapshot snapshot = ForecastSnapshot.read(mContext);
+        Log.d(LOG_TAG, "Read the snapshot in " + (System.nanoTime() - start) / 1000 + " us");
+
+        assertEquals(2, snapshot.payload.size());
+        assertEquals(501, snapshot.payload.getWeatherId(1));
+    }
+
+    public void testConcurrentWritesDoNotTear() throws Exception {
+        final ForecastSnapshot empty = ForecastSnapshot.fromBytes(new byte[]{1, 0, 0, 0, 0, 0, 0});
+        final ForecastSnapshot full = ForecastSnapshot.fromBytes(TestForecastPayload.PAYLOAD);
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 200; i++) {
+                    empty.write(mContext);
+                }
+            }
+        });
+        other.start();
+        for (int i = 0; i < 200; i++) {
+            full.write(mContext);
+        }
+        other.join();
+
+        ForecastSnapshot snapshot = ForecastSnapshot.read(mContext);
+        assertNotNull("Error: two writers left a torn snapshot", snapshot);
+        assertTrue(snapshot.payload.size() == 0 || snapshot.payload.size() == 2);
+    }
+
+    public void testCorruptSnapshotIsIgnored() throws Exception {
+        FileOutputStream out = new FileOutputStream(new File(mContext.getFilesDir(), FILE_NAME));
+        out.write(new byte[]{1, 2, 3});
+        out.close();
+        assertNull(ForecastSnapshot.read(mContext));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/*
+    Draws a watch-face-like frame onto an offscreen Canvas, once redrawing everything each frame
+    and once through LayerCompositor, and reports the time per frame for both.
+ */
+public class TestLayerCompositor extends AndroidTestCase {
+    public static final String LOG_TAG = TestLayerCompositor.class.getSimpleName();
+
+    private static final int SIZE = 320;
+    private static final int FRAMES = 1000;
+
+    private final Rect mBounds = new Rect(0, 0, SIZE, SIZE);
+    private final Calendar mCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    private Paint mBackgroundPaint;
+    private Paint mTextPaint;
+    private WatchFaceText mWatchFaceText;
+    private WeatherIconCache mIconCache;
+
+    private final LayerCompositor.Layer mStaticLayer = new LayerCompositor.Layer() {
+        @Override
+        public void draw(Canvas canvas, Rect bounds) {
+            canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
+            mWatchFaceText.drawDate(canvas, mCalendar, bounds.width() / 2f, 127);
+            canvas.drawLine(bounds.centerX() - 40, 142, bounds.centerX() + 40, 142, mTextPaint);
+            canvas.drawBitmap(mIconCache.get(800, 60, WeatherIconCache.MODE_INTERACTIVE),
+                    60, 152, null);
+            canvas.drawText("25°", 135, 192, mTextPaint);
+            canvas.drawText("16°", 190, 192, mTextPaint);
+        }
+    };
+
+    private final LayerCompositor.Layer mClockLayer = new LayerCompositor.Layer() {
+        @Override
+        public void draw(Canvas canvas, Rect bounds) {
+            mWatchFaceText.drawTime(canvas, mCalendar, bounds.width() / 2f, 100);
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mBackgroundPaint = new Paint();
+        mBackgroundPaint.setColor(Color.rgb(0x03, 0xa9, 0xf4));
+        mTextPaint = new Paint();
+        mTextPaint.setAntiAlias(true);
+        mTextPaint.setColor(Color.WHITE);
+        mTextPaint.setTextSize(30);
+        mWatchFaceText = new WatchFaceText(mTextPaint, mTextPaint, mTextPaint, mTextPaint,
+                "EEE, MMM d yyyy");
+        mWatchFaceText.setTimeZone(mCalendar.getTimeZone());
+        mIconCache = new WeatherIconCache(getContext().getResources());
+        mCalendar.set(2017, Calendar.MARCH, 11, 9, 0, 0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mIconCache.clear();
+        super.tearDown();
+    }
+
+    public void testCompositedFrameMatchesFullRedraw() {
+        Bitmap full = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        Canvas fullCanvas = new Canvas(full);
+        mStaticLayer.draw(fullCanvas, mBounds);
+        mClockLayer.draw(fullCanvas, mBounds);
+
+        Bitmap composited = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        LayerCompositor compositor = new LayerCompositor(mStaticLayer, mClockLayer);
+        compositor.draw(new Canvas(composited), mBounds);
+
+        assertTrue("Error: the composited frame differs from drawing everything",
+                full.sameAs(composited));
+        compositor.release();
+        full.recycle();
+        composited.recycle();
+    }
+
+    public void testStaticLayerOnlyRedrawnWhenInvalidated() {
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        LayerCompositor compositor = new LayerCompositor(mStaticLayer, mClockLayer);
+        for (int i = 0; i < 10; i++) {
+            mCalendar.add(Calendar.MINUTE, 1);
+            compositor.draw(canvas, mBounds);
+        }
+        assertEquals(1, compositor.getStaticRenderCount());
+
+        compositor.invalidateStatic();
+        compositor.draw(canvas, mBounds);
+        assertEquals(2, compositor.getStaticRenderCount());
+        compositor.release();
+        bitmap.recycle();
+    }
+
+    public void testBenchmarkFrameTime() {
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        LayerCompositor compositor = new LayerCompositor(mStaticLayer, mClockLayer);
+        // Warm up both paths: the icon decode, the digit widths and the date.
+        mStaticLayer.draw(canvas, mBounds);
+        compositor.draw(canvas, mBounds);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            mCalendar.add(Calendar.SECOND, 1);
+            mStaticLayer.draw(canvas, mBounds);
+            mClockLayer.draw(canvas, mBounds);
+        }
+        long fullMicros = (System.nanoTime() - start) / 1000 / FRAMES;
+
+        start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            mCalendar.add(Calendar.SECOND, 1);
+            compositor.draw(canvas, mBounds);
+        }
+        long compositedMicros = (System.nanoTime() - start) / 1000 / FRAMES;
+
+        Log.d(LOG_TAG, "Full redraw: " + fullMicros + " us/frame, layered: "
+                + compositedMicros + " us/frame");
+        compositor.release();
+        bitmap.recycle();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.app;
+
+import android.test.AndroidTestCase;
+
+public class TestTickScheduler extends AndroidTestCase {
+    private static final long MINUTE = TickScheduler.TICK_INTERVAL_MS;
+    // Some minute boundary.
+    private static final long BOUNDARY = 1489276800000L;
+
+    public void testDelayReachesNextMinute() {
+        assertEquals(MINUTE, TickScheduler.delayUntilNextTick(BOUNDARY));
+        assertEquals(MINUTE - 1, TickScheduler.delayUntilNextTick(BOUNDARY + 1));
+        assertEquals(1, TickScheduler.delayUntilNextTick(BOUNDARY + MINUTE - 1));
+        assertEquals(30500, TickScheduler.delayUntilNextTick(BOUNDARY + 29500));
+    }
+
+    public void testCountsSkippedFrames() {
+        TickScheduler scheduler = new TickScheduler();
+
+        // A full minute replaces 60 one-second frames with one.
+        scheduler.scheduleNextTick(BOUNDARY);
+        scheduler.onFrameRendered();
+        assertEquals(1, scheduler.getFramesRendered());
+        assertEquals(59, scheduler.getFramesSkipped());
+
+        // Starting half a second in, there are still 60 second boundaries ahead.
+        scheduler.scheduleNextTick(BOUNDARY + 500);
+        assertEquals(59 + 59, scheduler.getFramesSkipped());
+
+        // With under a second to go, nothing is skipped.
+        scheduler.scheduleNextTick(BOUNDARY + MINUTE - 200);
+        assertEquals(59 + 59, scheduler.getFramesSkipped());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/*
+    Renders the watch face's time and date text the way onDraw does and checks that steady-state
+    frames allocate nothing.
+ */
+public class TestWatchFaceText extends AndroidTestCase {
+    private static final String DATE_PATTERN = "EEE, MMM d yyyy";
+    private static final int FRAMES = 10000;
+
+    private WatchFaceText mWatchFaceText;
+    private Calendar mCalendar;
+    private Canvas mCanvas;
+    private Bitmap mBitmap;
+
+    private static Paint createTextPaint() {
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setTextSize(40);
+        return paint;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        mWatchFaceText = new WatchFaceText(createTextPaint(), createTextPaint(), createTextPaint(),
+                createTextPaint(), DATE_PATTERN);
+        mWatchFaceText.setTimeZone(mCalendar.getTimeZone());
+        mBitmap = Bitmap.createBitmap(320, 320, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mBitmap.recycle();
+        super.tearDown();
+    }
+
+    private void drawFrame() {
+        mWatchFaceText.drawTime(mCanvas, mCalendar, 160, 100);
+        mWatchFaceText.drawDate(mCanvas, mCalendar, 160, 127);
+    }
+
+    public void testDateText() {
+        mCalendar.set(2017, Calendar.MARCH, 11, 23, 59, 0);
+        SimpleDateFormat format = new SimpleDateFormat(DATE_PATTERN);
+        format.setTimeZone(mCalendar.getTimeZone());
+        assertEquals(format.format(mCalendar.getTime()).toUpperCase(),
+                mWatchFaceText.getDateText(mCalendar));
+
+        // Crossing midnight rebuilds it.
+        mCalendar.add(Calendar.MINUTE, 1);
+        assertEquals(format.format(mCalendar.getTime()).toUpperCase(),
+                mWatchFaceText.getDateText(mCalendar));
+    }
+
+    @SuppressWarnings("deprecation")
+    public void testFramesDoNotAllocate() {
+        // 10000 one-second frames from midnight stay within one day.
+        mCalendar.set(2017, Calendar.MARCH, 11, 0, 0, 0);
+        long start = mCalendar.getTimeInMillis();
+        // Let the first frame measure the digits and build the date.
+        drawFrame();
+
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocCount();
+            for (int i = 0; i < FRAMES; i++) {
+                mCalendar.setTimeInMillis(start + i * 1000L);
+                drawFrame();
+            }
+            int allocations = Debug.getThreadAllocCount();
+            assertEquals("Error: drawing " + FRAMES + " frames allocated " + allocations
+                    + " objects", 0, allocations);
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.app;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/*
+    Draws the weather icon onto an offscreen Canvas the way onDraw does, once decoding it every
+    frame as the face used to and once through WeatherIconCache, and logs frame time and
+    allocations for both.
+ */
+public class TestWeatherIconCache extends AndroidTestCase {
+    public static final String LOG_TAG = TestWeatherIconCache.class.getSimpleName();
+
+    private static final int WEATHER_ID = 800;
+    private static final int ICON_SIZE = 60;
+    private static final int DECODING_FRAMES = 100;
+    private static final int CACHED_FRAMES = 10000;
+
+    private WeatherIconCache mCache;
+    private Paint mPaint;
+    private Canvas mCanvas;
+    private Bitmap mBitmap;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mCache = new WeatherIconCache(mContext.getResources());
+        mPaint = new Paint();
+        mBitmap = Bitmap.createBitmap(320, 320, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mCache.clear();
+        mBitmap.recycle();
+        super.tearDown();
+    }
+
+    // What onDraw did for the icon before the cache.
+    private void drawDecodingFrame() {
+        Bitmap art = BitmapFactory.decodeResource(mContext.getResources(),
+                Utility.getArtResourceForWeatherCondition(WEATHER_ID));
+        Bitmap scaled = Bitmap.createScaledBitmap(art, ICON_SIZE, ICON_SIZE, true);
+        mCanvas.drawBitmap(scaled, 130, 200, mPaint);
+    }
+
+    private void drawCachedFrame() {
+        mCanvas.drawBitmap(mCache.get(WEATHER_ID, ICON_SIZE, WeatherIconCache.MODE_INTERACTIVE),
+                130, 200, mPaint);
+    }
+
+    public void testCacheKeepsIconUntilItChanges() {
+        Bitmap icon = mCache.get(WEATHER_ID, ICON_SIZE, WeatherIconCache.MODE_INTERACTIVE);
+        assertEquals(ICON_SIZE, icon.getWidth());
+        assertEquals(ICON_SIZE, icon.getHeight());
+        assertSame(icon, mCache.get(WEATHER_ID, ICON_SIZE, WeatherIconCache.MODE_INTERACTIVE));
+
+        Bitmap ambient = mCache.get(WEATHER_ID, ICON_SIZE, WeatherIconCache.MODE_AMBIENT);
+        assertNotSame(icon, ambient);
+
+        // A different size drops the old icons.
+        mCache.get(WEATHER_ID, ICON_SIZE * 2, WeatherIconCache.MODE_INTERACTIVE);
+        assertTrue(icon.isRecycled());
+        assertTrue(ambient.isRecycled());
+    }
+
+    @SuppressWarnings("deprecation")
+    public void testBenchmarkFrames() {
+        // Warm up both paths, which also fills the cache.
+        drawDecodingFrame();
+        drawCachedFrame();
+
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocCount();
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < DECODING_FRAMES; i++) {
+                drawDecodingFrame();
+            }
+            long decodingNanos = (SystemClock.elapsedRealtimeNanos() - start) / DECODING_FRAMES;
+            int decodingAllocs = Debug.getThreadAllocCount() / DECODING_FRAMES;
+
+            Debug.resetThreadAllocCount();
+            start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < CACHED_FRAMES; i++) {
+                drawCachedFrame();
+            }
+            long cachedNanos = (SystemClock.elapsedRealtimeNanos() - start) / CACHED_FRAMES;
+            int cachedAllocs = Debug.getThreadAllocCount();
+
+            Log.d(LOG_TAG, "Icon per frame: decoding " + decodingNanos / 1000 + " us, "
+                    + decodingAllocs + " allocations; cached " + cachedNanos / 1000 + " us, "
+                    + cachedAllocs + " allocations over " + CACHED_FRAMES + " frames");
+            assertEquals("Error: drawing the cached icon allocated", 0, cachedAllocs);
+            assertTrue("Error: the cached icon should draw faster than decoding it",
+                    cachedNanos < decodingNanos);
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Looper;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Checks that forecasts published to WeatherRepository reach its listeners on the main
+    thread, and compares the delivery latency with the global broadcast it replaced.
+ */
+public class TestWeatherRepository extends AndroidTestCase {
+    public static final String LOG_TAG = TestWeatherRepository.class.getSimpleName();
+
+    private static final String FILE_NAME = "forecast_snapshot.bin";
+    private static final String ACTION_BENCHMARK = "com.example.android.app.BENCHMARK";
+    private static final int ITERATIONS = 100;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        new File(mContext.getFilesDir(), FILE_NAME).delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        new File(mContext.getFilesDir(), FILE_NAME).delete();
+        super.tearDown();
+    }
+
+    public void testPublishReachesListenersAndDisk() throws Exception {
+        WeatherRepository repository = new WeatherRepository(mContext);
+        assertNull(repository.getForecast());
+
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final ForecastSnapshot[] received = new ForecastSnapshot[1];
+        WeatherRepository.Listener listener = new WeatherRepository.Listener() {
+            @Override
+            public void onForecastChanged(ForecastSnapshot forecast) {
+                assertSame(Looper.getMainLooper(), Looper.myLooper());
+                received[0] = forecast;
+                delivered.countDown();
+            }
+        };
+        repository.addListener(listener);
+
+        ForecastSnapshot forecast = ForecastSnapshot.fromBytes(TestForecastPayload.PAYLOAD);
+        repository.publish(forecast);
+        assertTrue("Error: the listener wasn't called", delivered.await(5, TimeUnit.SECONDS));
+        assertSame(forecast, received[0]);
+        assertSame(forecast, repository.getForecast());
+        repository.removeListener(listener);
+
+        // A fresh process picks it up from disk.
+        ForecastSnapshot reloaded = new WeatherRepository(mContext).getForecast();
+        assertTrue(Arrays.equals(TestForecastPayload.PAYLOAD, reloaded.data));
+    }
+
+    public void testBenchmarkDeliveryLatency() throws Exception {
+        final ForecastSnapshot forecast = ForecastSnapshot.fromBytes(TestForecastPayload.PAYLOAD);
+
+        // The repository, publishing from a background thread as onDataChanged does.
+        WeatherRepository repository = new WeatherRepository(mContext);
+        final long[] receivedAt = new long[1];
+        final CountDownLatch[] latch = new CountDownLatch[1];
+        WeatherRepository.Listener listener = new WeatherRepository.Listener() {
+            @Override
+            public void onForecastChanged(ForecastSnapshot snapshot) {
+                receivedAt[0] = System.nanoTime();
+                latch[0].countDown();
+            }
+        };
+        repository.addListener(listener);
+        long repositoryNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            latch[0] = new CountDownLatch(1);
+            long start = System.nanoTime();
+            repository.publish(forecast);
+            assertTrue(latch[0].await(5, TimeUnit.SECONDS));
+            repositoryNanos += receivedAt[0] - start;
+        }
+        repository.removeListener(listener);
+
+        // The broadcast it replaced, carrying the same bytes.
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                ForecastSnapshot.fromBytes(intent.getByteArrayExtra("payload"));
+                receivedAt[0] = System.nanoTime();
+                latch[0].countDown();
+            }
+        };
+        mContext.registerReceiver(receiver, new IntentFilter(ACTION_BENCHMARK));
+        long broadcastNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            latch[0] = new CountDownLatch(1);
+            long start = System.nanoTime();
+            forecast.write(mContext);
+            mContext.sendBroadcast(new Intent(ACTION_BENCHMARK).putExtra("payload", forecast.data));
+            assertTrue(latch[0].await(5, TimeUnit.SECONDS));
+            broadcastNanos += receivedAt[0] - start;
+        }
+        mContext.unregisterReceiver(receiver);
+
+        Log.d(LOG_TAG, "Delivery latency: repository " + repositoryNanos / ITERATIONS / 1000
+                + " us, broadcast " + broadcastNanos / ITERATIONS / 1000 + " us");
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.app;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.TimeZone;
+
+/**
+ * Decodes the multi-day forecast the phone sends, encoded by the app's WearForecastPayload
+ * (big-endian):
+ *
+ * <pre>
+ *   byte   version, {@link #VERSION}
+ *   byte   flags, {@link #FLAG_METRIC}
+ *   int    first day, as days since 1970-01-01 in the phone's time zone
+ *   byte   number of days
+ *   then for each day:
+ *     byte   days after the first day
+ *     short  weather id
+ *     short  high, in tenths of a degree Celsius
+ *     short  low, in tenths of a degree Celsius
+ * </pre>
+ */
+final class ForecastPayload {
+    static final int VERSION = 1;
+    static final int FLAG_METRIC = 1;
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    final boolean metric;
+    private final int[] mDays;
+    private final int[] mWeatherIds;
+    private final short[] mMaxTemps;
+    private final short[] mMinTemps;
+
+    private ForecastPayload(boolean metric, int[] days, int[] weatherIds, short[] maxTemps,
+                            short[] minTemps) {
+        this.metric = metric;
+        mDays = days;
+        mWeatherIds = weatherIds;
+        mMaxTemps = maxTemps;
+        mMinTemps = minTemps;
+    }
+
+    /**
+     * @return the decoded forecast, or null if data is missing, truncated or of a version
+     * this watch face doesn't know.
+     */
+    static ForecastPayload decode(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        try {
+            if (buffer.get() != VERSION) {
+                return null;
+            }
+            boolean metric = (buffer.get() & FLAG_METRIC) != 0;
+            int firstDay = buffer.getInt();
+            int count = buffer.get() & 0xff;
+            int[] days = new int[count];
+            int[] weatherIds = new int[count];
+            short[] maxTemps = new short[count];
+            short[] minTemps = new short[count];
+            for (int i = 0; i < count; i++) {
+                days[i] = firstDay + (buffer.get() & 0xff);
+                weatherIds[i] = buffer.getShort();
+                maxTemps[i] = buffer.getShort();
+                minTemps[i] = buffer.getShort();
+            }
+            return new ForecastPayload(metric, days, weatherIds, maxTemps, minTemps);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the day timeMillis falls on in timeZone, as days since the epoch.
+     */
+    static int toEpochDay(long timeMillis, TimeZone timeZone) {
+        long local = timeMillis + timeZone.getOffset(timeMillis);
+        return (int) Math.floor((double) local / DAY_IN_MILLIS);
+    }
+
+    int size() {
+        return mDays.length;
+    }
+
+    /**
+     * @return the index of the forecast for epochDay, or -1 if the forecast doesn't cover it.
+     */
+    int indexOfDay(int epochDay) {
+        for (int i = 0; i < mDays.length; i++) {
+            if (mDays[i] == epochDay) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int getDay(int index) {
+        return mDays[index];
+    }
+
+    int getWeatherId(int index) {
+        return mWeatherIds[index];
+    }
+
+    /**
+     * @return the high, in degrees Celsius.
+     */
+    double getMaxTemp(int index) {
+        return mMaxTemps[index] / 10.0;
+    }
+
+    /**
+     * @return the low, in degrees Celsius.
+     */
+    double getMinTemp(int index) {
+        return mMinTemps[index] / 10.0;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.android.gms.wearable.DataItem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The last forecast the phone sent.  It's kept in a small binary file, in the same encoding
+ * the phone sends, so the watch face can show it straight away after its process restarts
+ * instead of waiting for the phone's next sync.
+ */
+final class ForecastSnapshot {
+    private static final String LOG_TAG = ForecastSnapshot.class.getSimpleName();
+
+    // The DataItem the phone publishes the forecast to; its data is a ForecastPayload.
+    static final String PATH = "/forecast";
+
+    private static final String FILE_NAME = "forecast_snapshot.bin";
+    // "SWF" and a file format version; bump the version when the layout below changes.
+    private static final int MAGIC = 0x53574602;
+    // Far more than a two week payload needs; anything bigger is a corrupt file.
+    private static final int MAX_PAYLOAD_SIZE = 4096;
+
+    // Writers share one temp file, so only one of them may write at a time.
+    private static final Object sWriteLock = new Object();
+
+    final byte[] data;
+    final ForecastPayload payload;
+
+    private ForecastSnapshot(byte[] data, ForecastPayload payload) {
+        this.data = data;
+        this.payload = payload;
+    }
+
+    /**
+     * @return the snapshot of an encoded payload, or null if it can't be decoded.
+     */
+    static ForecastSnapshot fromBytes(byte[] data) {
+        ForecastPayload payload = ForecastPayload.decode(data);
+        return payload != null ? new ForecastSnapshot(data, payload) : null;
+    }
+
+    static ForecastSnapshot fromDataItem(DataItem dataItem) {
+        return fromBytes(dataItem.getData());
+    }
+
+    /**
+     * Reads the stored forecast.  The file is a hundred-odd bytes, so this is cheap enough to
+     * call on the main thread while the watch face starts.
+     *
+     * @return the stored forecast, or null if there isn't a usable one.
+     */
+    static ForecastSnapshot read(Context context) {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            int length = in.readInt();
+            if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+                return null;
+            }
+            byte[] data = new byte[length];
+            in.readFully(data);
+            return fromBytes(data);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error reading " + file, e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Stores this forecast.  Writes a new file and renames it over the old one, so a reader
+     * never sees half a snapshot.  Safe to call from several threads at once.
+     */
+    void write(Context context) {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        File tempFile = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+        synchronized (sWriteLock) {
+            DataOutputStream out = null;
+            try {
+                out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(tempFile)));
+                out.writeInt(MAGIC);
+                out.writeInt(data.length);
+                out.write(data);
+                out.close();
+                out = null;
+                if (!tempFile.renameTo(file)) {
+                    Log.e(LOG_TAG, "Error renaming " + tempFile + " to " + file);
+                }
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error writing " + tempFile, e);
+            } finally {
+                closeQuietly(out);
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing left to do with it.
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.app;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Measures how long the watch face takes to draw a frame and logs the average and worst time
+ * every {@link #REPORT_INTERVAL_FRAMES} frames.  Does nothing unless the tag is loggable at
+ * DEBUG, e.g. after {@code adb shell setprop log.tag.FrameStats DEBUG}.  Allocations per frame
+ * are measured by TestWeatherIconCache instead, since counting them slows the whole process
+ * down.
+ */
+final class FrameStats {
+    private static final String TAG = "FrameStats";
+    private static final int REPORT_INTERVAL_FRAMES = 60;
+
+    private final boolean mEnabled = Log.isLoggable(TAG, Log.DEBUG);
+    private long mFrameStartNanos;
+
+    private int mFrames;
+    private long mTotalNanos;
+    private long mMaxNanos;
+
+    void beginFrame() {
+        if (!mEnabled) {
+            return;
+        }
+        mFrameStartNanos = SystemClock.elapsedRealtimeNanos();
+    }
+
+    void endFrame() {
+        if (!mEnabled) {
+            return;
+        }
+        long nanos = SystemClock.elapsedRealtimeNanos() - mFrameStartNanos;
+        mTotalNanos += nanos;
+        mMaxNanos = Math.max(mMaxNanos, nanos);
+        if (++mFrames == REPORT_INTERVAL_FRAMES) {
+            Log.d(TAG, "onDraw over " + mFrames + " frames: avg "
+                    + (mTotalNanos / mFrames / 1000) + " us, max " + (mMaxNanos / 1000) + " us");
+            mFrames = 0;
+            mTotalNanos = 0;
+            mMaxNanos = 0;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+/**
+ * Draws a frame as two layers: a static layer that is rendered into an offscreen bitmap and
+ * reused until {@link #invalidateStatic()} is called, and a dynamic layer drawn on top of it
+ * every frame.  The watch face puts everything but the clock digits in the static layer.
+ */
+final class LayerCompositor {
+    interface Layer {
+        void draw(Canvas canvas, Rect bounds);
+    }
+
+    private final Layer mStaticLayer;
+    private final Layer mDynamicLayer;
+
+    private Bitmap mStaticBitmap;
+    private Canvas mStaticCanvas;
+    private boolean mStaticValid;
+    private int mStaticRenderCount;
+
+    LayerCompositor(Layer staticLayer, Layer dynamicLayer) {
+        mStaticLayer = staticLayer;
+        mDynamicLayer = dynamicLayer;
+    }
+
+    /**
+     * Makes the next frame render the static layer again.
+     */
+    void invalidateStatic() {
+        mStaticValid = false;
+    }
+
+    void draw(Canvas canvas, Rect bounds) {
+        int width = bounds.width();
+        int height = bounds.height();
+        if (mStaticBitmap == null || mStaticBitmap.getWidth() != width
+                || mStaticBitmap.getHeight() != height) {
+            release();
+            mStaticBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mStaticCanvas = new Canvas(mStaticBitmap);
+        }
+        if (!mStaticValid) {
+            mStaticBitmap.eraseColor(0);
+            // The static layer draws as if at the origin of the bounds.
+            mStaticCanvas.save();
+            mStaticCanvas.translate(-bounds.left, -bounds.top);
+            mStaticLayer.draw(mStaticCanvas, bounds);
+            mStaticCanvas.restore();
+            mStaticValid = true;
+            mStaticRenderCount++;
+        }
+        canvas.drawBitmap(mStaticBitmap, bounds.left, bounds.top, null);
+        mDynamicLayer.draw(canvas, bounds);
+    }
+
+    /**
+     * @return how many times the static layer has been rendered.
+     */
+    int getStaticRenderCount() {
+        return mStaticRenderCount;
+    }
+
+    void release() {
+        if (mStaticBitmap != null) {
+            mStaticBitmap.recycle();
+            mStaticBitmap = null;
+            mStaticCanvas = null;
+        }
+        mStaticValid = false;
+    }
+}
@@ -22,13 +22,13 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.Typeface;
 import android.graphics.drawable.PaintDrawable;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
@@ -41,19 +41,23 @@ import android.widget.Toast;
 
 import com.example.android.app.R;
 import com.example.android.app.Utility;
-import com.example.android.app.WeatherWearableListenerService;
+import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
 import com.google.android.gms.wearable.WearableListenerService;
 
 import java.lang.ref.WeakReference;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
 
 /**
- * Digital watch face with seconds. In ambient mode, the seconds aren't displayed. On devices with
- * low-bit ambient mode, the text is drawn without anti-aliasing in ambient mode.
+ * Digital watch face showing hours and minutes, the date and today's forecast. It redraws once a
+ * minute, or when the forecast changes. On devices with low-bit ambient mode, the text is drawn
+ * without anti-aliasing in ambient mode.
  */
 public class SunshineWatchFace extends CanvasWatchFaceService {
     private final static String TAG = "SunshineWatchFace";
@@ -67,18 +71,18 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
     private String mLowTemp;
 
     private int mWeatherId;
+    private ForecastSnapshot mForecast;
 
 
     /**
-     * Update rate in milliseconds for interactive mode. We update once a second since seconds are
-     * displayed in interactive mode.
+     * Handler message id for updating the time periodically in interactive mode.
      */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final int MSG_UPDATE_TIME = 0;
 
     /**
-     * Handler message id for updating the time periodically in interactive mode.
+     * Width and height of the weather icon, in pixels.
      */
-    private static final int MSG_UPDATE_TIME = 0;
+    private static final int WEATHER_ICON_SIZE = 60;
 
     @Override
     public Engine onCreateEngine() {
@@ -108,7 +112,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
     private class Engine extends CanvasWatchFaceService.Engine {
         final Handler mUpdateTimeHandler = new EngineHandler(this);
         boolean mRegisteredTimeZoneReceiver = false;
-        boolean mRegisteredWeatherUpdateReceiver = false;
+        GoogleApiClient mGoogleApiClient;
 
         Paint mBackgroundPaint;
 
@@ -123,31 +127,51 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         Paint mHighTempPaint;
         Paint mLowTempPaint;
         Paint mWeatherIconPaint;
+        WeatherIconCache mWeatherIconCache;
+        final FrameStats mFrameStats = new FrameStats();
+        final TickScheduler mTickScheduler = new TickScheduler();
+        final LayerCompositor mLayerCompositor = new LayerCompositor(
+                new LayerCompositor.Layer() {
+                    @Override
+                    public void draw(Canvas canvas, Rect bounds) {
+                        drawStaticLayer(canvas, bounds);
+                    }
+                },
+                new LayerCompositor.Layer() {
+                    @Override
+                    public void draw(Canvas canvas, Rect bounds) {
+                        drawClockLayer(canvas, bounds);
+                    }
+                });
+        // The day, as days since the epoch, the static layer's date and forecast are for.
+        int mStaticLayerDay = -1;
 
         boolean mAmbient;
         Calendar mCalendar;
 
-        SimpleDateFormat mSimpleDateFormat;
+        WatchFaceText mWatchFaceText;
+        float mHighTempWidth;
+        float mLowTempWidth;
+        boolean mTempWidthsValid;
 
 
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
                 mCalendar.setTimeZone(TimeZone.getDefault());
+                mWatchFaceText.setTimeZone(mCalendar.getTimeZone());
+                mLayerCompositor.invalidateStatic();
                 invalidate();
             }
         };
 
-        final BroadcastReceiver mWeatherChangedReceiver = new BroadcastReceiver() {
+        final WeatherRepository.Listener mForecastListener = new WeatherRepository.Listener() {
             @Override
-            public void onReceive(Context context, Intent intent) {
-                Log.i("watchface", "onReceive called");
-
-                mHighTemp = intent.getStringExtra("max");
-                mLowTemp = intent.getStringExtra("min");
-                mWeatherId = intent.getIntExtra("weather_id", -1);
+            public void onForecastChanged(ForecastSnapshot forecast) {
+                applyForecast(forecast);
             }
         };
+        WeatherRepository mWeatherRepository;
         float mXOffset;
         float mYOffset;
 
@@ -163,8 +187,6 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
 
-            WeatherWearableListenerService weatherListenerService = new WeatherWearableListenerService();
-
             setWatchFaceStyle(new WatchFaceStyle.Builder(SunshineWatchFace.this)
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_VARIABLE)
                     .setBackgroundVisibility(WatchFaceStyle.BACKGROUND_VISIBILITY_INTERRUPTIVE)
@@ -175,6 +197,100 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
             initializeBackground();
             initializeWatchFace();
+
+            // Show the last forecast we had right away, then ask the data layer for the
+            // current one rather than waiting for the phone's next change.
+            mWeatherRepository = WeatherRepository.getInstance(SunshineWatchFace.this);
+            applyForecast(mWeatherRepository.getForecast());
+            fetchCurrentForecast();
+        }
+
+        private void applyForecast(ForecastSnapshot snapshot) {
+            if (snapshot == null || snapshot == mForecast) {
+                return;
+            }
+            mForecast = snapshot;
+            showForecastForDay(ForecastPayload.toEpochDay(System.currentTimeMillis(),
+                    mCalendar.getTimeZone()));
+            invalidate();
+        }
+
+        /**
+         * Picks the day's entry out of {@link #mForecast} for the weather row, or clears the
+         * row if the forecast doesn't cover the day.
+         */
+        private void showForecastForDay(int epochDay) {
+            int index = mForecast != null ? mForecast.payload.indexOfDay(epochDay) : -1;
+            if (index < 0) {
+                mHighTemp = null;
+                mLowTemp = null;
+            } else {
+                ForecastPayload payload = mForecast.payload;
+                mHighTemp = Utility.formatTemperature(payload.getMaxTemp(index), payload.metric);
+                mLowTemp = Utility.formatTemperature(payload.getMinTemp(index), payload.metric);
+                mWeatherId = payload.getWeatherId(index);
+            }
+            mTempWidthsValid = false;
+            mLayerCompositor.invalidateStatic();
+        }
+
+        /**
+         * Reads the phone's current forecast DataItem once, in case it changed while the watch
+         * face wasn't running.
+         */
+        private void fetchCurrentForecast() {
+            mGoogleApiClient = new GoogleApiClient.Builder(SunshineWatchFace.this)
+                    .addApi(Wearable.API)
+                    .addConnectionCallbacks(new GoogleApiClient.ConnectionCallbacks() {
+                        @Override
+                        public void onConnected(Bundle bundle) {
+                            Uri uri = new Uri.Builder()
+                                    .scheme(PutDataRequest.WEAR_URI_SCHEME)
+                                    .path(ForecastSnapshot.PATH)
+                                    .build();
+                            Wearable.DataApi.getDataItems(mGoogleApiClient, uri)
+                                    .setResultCallback(new ResultCallback<DataItemBuffer>() {
+                                        @Override
+                                        public void onResult(DataItemBuffer dataItems) {
+                                            onCurrentForecast(dataItems);
+                                        }
+                                    });
+                        }
+
+                        @Override
+                        public void onConnectionSuspended(int cause) {
+                            // Nothing to do; the listener service still delivers changes.
+                        }
+                    })
+                    .addOnConnectionFailedListener(
+                            new GoogleApiClient.OnConnectionFailedListener() {
+                                @Override
+                                public void onConnectionFailed(ConnectionResult result) {
+                                    // The stored forecast stays up until the listener service
+                                    // hears from the phone.
+                                    Log.w(TAG, "Couldn't fetch the current forecast: " + result);
+                                }
+                            })
+                    .build();
+            mGoogleApiClient.connect();
+        }
+
+        private void onCurrentForecast(DataItemBuffer dataItems) {
+            try {
+                if (dataItems.getStatus().isSuccess()) {
+                    for (DataItem dataItem : dataItems) {
+                        ForecastSnapshot snapshot = ForecastSnapshot.fromDataItem(dataItem);
+                        if (snapshot != null) {
+                            mWeatherRepository.publish(snapshot);
+                            applyForecast(snapshot);
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                dataItems.release();
+                mGoogleApiClient.disconnect();
+            }
         }
 
         private void initializeBackground() {
@@ -198,14 +314,19 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             mCalendar = Calendar.getInstance();
 
             mWeatherIconPaint = new Paint();
+            mWeatherIconCache = new WeatherIconCache(mResources);
 
-            mSimpleDateFormat = new SimpleDateFormat("EEE, MMM d yyyy");
-            mSimpleDateFormat.setTimeZone(mCalendar.getTimeZone());
+            mWatchFaceText = new WatchFaceText(mHoursPaint, mColonPaint, mMinutesPaint, mDatePaint,
+                    "EEE, MMM d yyyy");
+            mWatchFaceText.setTimeZone(mCalendar.getTimeZone());
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mGoogleApiClient.disconnect();
+            mWeatherIconCache.clear();
+            mLayerCompositor.release();
             super.onDestroy();
         }
 
@@ -231,14 +352,22 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
             if (visible) {
                 registerTimeZoneReceiver();
-                registerWeatherUpdateReceiver();
+                mWeatherRepository.addListener(mForecastListener);
+                // Catch up on anything published while we weren't listening.
+                applyForecast(mWeatherRepository.getForecast());
 
                 // Update time zone in case it changed while we weren't visible.
                 mCalendar.setTimeZone(TimeZone.getDefault());
+                mWatchFaceText.setTimeZone(mCalendar.getTimeZone());
+                mLayerCompositor.invalidateStatic();
                 invalidate();
             } else {
                 unregisterTimeZoneReceiver();
-                unregisterWeatherUpdateReceiver();
+                mWeatherRepository.removeListener(mForecastListener);
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Frames rendered: " + mTickScheduler.getFramesRendered()
+                            + ", skipped: " + mTickScheduler.getFramesSkipped());
+                }
             }
 
             // Whether the timer should be running depends on whether we're visible (as well as
@@ -255,15 +384,6 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             SunshineWatchFace.this.registerReceiver(mTimeZoneReceiver, filter);
         }
 
-        private void registerWeatherUpdateReceiver() {
-            if (mRegisteredWeatherUpdateReceiver) {
-                return;
-            }
-            mRegisteredWeatherUpdateReceiver = true;
-            IntentFilter filter = new IntentFilter("ACTION_WEATHER_CHANGED");
-            SunshineWatchFace.this.registerReceiver(mWeatherChangedReceiver, filter);
-        }
-
         private void unregisterTimeZoneReceiver() {
             if (!mRegisteredTimeZoneReceiver) {
                 return;
@@ -272,14 +392,6 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             SunshineWatchFace.this.unregisterReceiver(mTimeZoneReceiver);
         }
 
-        private void unregisterWeatherUpdateReceiver() {
-            if (!mRegisteredWeatherUpdateReceiver) {
-                return;
-            }
-            mRegisteredWeatherUpdateReceiver = false;
-            SunshineWatchFace.this.unregisterReceiver(mWeatherChangedReceiver);
-        }
-
         @Override
         public void onApplyWindowInsets(WindowInsets insets) {
             super.onApplyWindowInsets(insets);
@@ -306,12 +418,19 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
             mLinePaint.setStrokeWidth(0);
 
+            mWatchFaceText.invalidateMeasurements();
+            mTempWidthsValid = false;
+            mLayerCompositor.invalidateStatic();
+
+            // Round and square layouts may want a differently sized icon; rebuild it on demand.
+            mWeatherIconCache.clear();
         }
 
         @Override
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            mLayerCompositor.invalidateStatic();
         }
 
         @Override
@@ -334,6 +453,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                     mHighTempPaint.setAntiAlias(!inAmbientMode);
                     mLinePaint.setAntiAlias(!inAmbientMode);
                 }
+                mLayerCompositor.invalidateStatic();
                 invalidate();
             }
 
@@ -342,12 +462,27 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             updateTimer();
         }
 
-        private String formatTwoDigitNumber(int hour) {
-            return String.format("%02d", hour);
-        }
-
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
+            mFrameStats.beginFrame();
+            long now = System.currentTimeMillis();
+            mCalendar.setTimeInMillis(now);
+            int day = ForecastPayload.toEpochDay(now, mCalendar.getTimeZone());
+            if (day != mStaticLayerDay) {
+                // A new day: new date, and the forecast moves on to it.
+                mStaticLayerDay = day;
+                showForecastForDay(day);
+            }
+            mLayerCompositor.draw(canvas, bounds);
+            mFrameStats.endFrame();
+            mTickScheduler.onFrameRendered();
+        }
+
+        /**
+         * Draws everything but the clock: the background, date, divider and weather row.  Only
+         * runs when {@link #mLayerCompositor} has been invalidated.
+         */
+        private void drawStaticLayer(Canvas canvas, Rect bounds) {
             // Draw the background.
             if (isInAmbientMode()) {
                 canvas.drawColor(Color.BLACK);
@@ -355,43 +490,11 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                 canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
             }
 
-            // Draw H:MM in ambient mode or H:MM:SS in interactive mode.
-            long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
-
-            float x = mXOffset;
-            float y = mYOffset;
-            float xTextWidth;
-            float xCanvasWidth;
-
-            String hourString = formatTwoDigitNumber(mCalendar.get(Calendar.HOUR_OF_DAY));
-            String colonString = ":";
-            String minuteString = formatTwoDigitNumber(mCalendar.get(Calendar.MINUTE));
-
-            xTextWidth = mHoursPaint.measureText(hourString) +
-                    mColonPaint.measureText(colonString) +
-                    mMinutesPaint.measureText(minuteString);
-
-            xCanvasWidth = bounds.width();
-            x = (xCanvasWidth - xTextWidth) / 2;
-
-            canvas.drawText(hourString, x, y, mHoursPaint);
-            x += mHoursPaint.measureText(hourString);
-
-            canvas.drawText(colonString, x, y, mColonPaint);
-            x += mColonPaint.measureText(colonString);
-
-            canvas.drawText(minuteString, x, y, mMinutesPaint);
-
-            y += 27;
+            float x;
+            float y = mYOffset + 27;
+            float xCanvasWidth = bounds.width();
 
-            String dateString = mSimpleDateFormat.format(mCalendar.getTime());
-            String dateUpper = dateString.toUpperCase();
-
-            xTextWidth = mDatePaint.measureText((dateUpper));
-            x = (xCanvasWidth - xTextWidth) / 2;
-
-            canvas.drawText(dateUpper, x, y, mDatePaint);
+            mWatchFaceText.drawDate(canvas, mCalendar, xCanvasWidth / 2, y);
 
             y += 15;
 
@@ -407,11 +510,15 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                 if (mWeatherId < 0)
                     mWeatherId = 800;
 
-                Bitmap weatherArt = BitmapFactory.decodeResource(getResources(), Utility.getArtResourceForWeatherCondition(mWeatherId));
-                int scale = 60;
-                Bitmap weatherScaled = Bitmap.createScaledBitmap(weatherArt, scale, scale, true);
+                int scale = WEATHER_ICON_SIZE;
+                Bitmap weatherScaled = mWeatherIconCache.get(mWeatherId, scale, getIconMode());
 
-                float xWeatherWidth = scale + 15 + mHighTempPaint.measureText(mHighTemp) + 10 + mLowTempPaint.measureText(mLowTemp);
+                if (!mTempWidthsValid) {
+                    mHighTempWidth = mHighTempPaint.measureText(mHighTemp);
+                    mLowTempWidth = mLowTempPaint.measureText(mLowTemp);
+                    mTempWidthsValid = true;
+                }
+                float xWeatherWidth = scale + 15 + mHighTempWidth + 10 + mLowTempWidth;
                 x = (xCanvasWidth - xWeatherWidth) / 2;
 
                 canvas.drawBitmap(weatherScaled, x, yBitmap, mWeatherIconPaint);
@@ -420,12 +527,25 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
                 canvas.drawText(mHighTemp, x, y, mHighTempPaint);
 
-                x += mHighTempPaint.measureText(mHighTemp) + 5;
+                x += mHighTempWidth + 5;
 
                 canvas.drawText(mLowTemp, x, y, mLowTempPaint);
+            }
+        }
 
+        /**
+         * Draws HH:MM over the static layer, every frame.
+         */
+        private void drawClockLayer(Canvas canvas, Rect bounds) {
+            mWatchFaceText.drawTime(canvas, mCalendar, bounds.width() / 2f, mYOffset);
+        }
 
+        private int getIconMode() {
+            if (!mAmbient) {
+                return WeatherIconCache.MODE_INTERACTIVE;
             }
+            return mLowBitAmbient
+                    ? WeatherIconCache.MODE_LOW_BIT_AMBIENT : WeatherIconCache.MODE_AMBIENT;
         }
 
         /**
@@ -448,14 +568,13 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         }
 
         /**
-         * Handle updating the time periodically in interactive mode.
+         * Handle updating the time in interactive mode.  Sleeps until the next minute boundary,
+         * the next time the clock's output changes; weather updates invalidate on their own.
          */
         private void handleUpdateTimeMessage() {
             invalidate();
             if (shouldTimerBeRunning()) {
-                long timeMs = System.currentTimeMillis();
-                long delayMs = INTERACTIVE_UPDATE_RATE_MS
-                        - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
+                long delayMs = mTickScheduler.scheduleNextTick(System.currentTimeMillis());
                 mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
             }
         }
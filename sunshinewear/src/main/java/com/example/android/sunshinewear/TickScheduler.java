@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.app;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works out when the watch face next has to redraw in interactive mode.  Only HH:MM is shown,
+ * so that's the next minute boundary; weather updates invalidate the face directly and don't
+ * need a tick.
+ *
+ * Also counts the frames rendered, and the frames a once-a-second timer would have drawn that
+ * were skipped instead, so the saving can be checked on a device.
+ */
+final class TickScheduler {
+    static final long TICK_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    // What the watch face used to redraw at.
+    private static final long LEGACY_INTERVAL_MS = TimeUnit.SECONDS.toMillis(1);
+
+    private long mFramesRendered;
+    private long mFramesSkipped;
+
+    /**
+     * @return milliseconds from nowMillis to the next minute boundary, always more than 0.
+     * Every time zone in use is offset from UTC by whole minutes, so UTC minute boundaries are
+     * local ones too.
+     */
+    static long delayUntilNextTick(long nowMillis) {
+        return TICK_INTERVAL_MS - (nowMillis % TICK_INTERVAL_MS);
+    }
+
+    /**
+     * Same as {@link #delayUntilNextTick}, and counts the one-second frames the delay skips.
+     */
+    long scheduleNextTick(long nowMillis) {
+        long delayMs = delayUntilNextTick(nowMillis);
+        // A one-second timer would have drawn at every second boundary up to the next tick;
+        // we draw at the last of them.
+        long legacyFrames = (delayMs + LEGACY_INTERVAL_MS - 1) / LEGACY_INTERVAL_MS;
+        mFramesSkipped += legacyFrames - 1;
+        return delayMs;
+    }
+
+    void onFrameRendered() {
+        mFramesRendered++;
+    }
+
+    long getFramesRendered() {
+        return mFramesRendered;
+    }
+
+    long getFramesSkipped() {
+        return mFramesSkipped;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.app;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Draws the watch face's time and date without allocating on each frame.  The digits come
+ * from a table of "00" to "59", text widths are measured once per text size, and the date
+ * string is only rebuilt when the day changes.
+ *
+ * Call {@link #invalidateMeasurements()} after changing the size or typeface of any of the
+ * paints.
+ */
+final class WatchFaceText {
+    // "00", "01", ... "59", two chars each.
+    private static final char[] TWO_DIGITS = new char[60 * 2];
+    private static final char[] COLON = {':'};
+
+    static {
+        for (int i = 0; i < 60; i++) {
+            TWO_DIGITS[i * 2] = (char) ('0' + i / 10);
+            TWO_DIGITS[i * 2 + 1] = (char) ('0' + i % 10);
+        }
+    }
+
+    private final Paint mHoursPaint;
+    private final Paint mColonPaint;
+    private final Paint mMinutesPaint;
+    private final Paint mDatePaint;
+    private final SimpleDateFormat mDateFormat;
+    private final Date mDate = new Date();
+
+    private final float[] mHourWidths = new float[24];
+    private final float[] mMinuteWidths = new float[60];
+    private float mColonWidth;
+    private boolean mWidthsValid;
+
+    // Year * 1000 + day of year of mDateText, or -1 when it has to be rebuilt.
+    private int mDateDay = -1;
+    private String mDateText;
+    private float mDateWidth;
+
+    WatchFaceText(Paint hoursPaint, Paint colonPaint, Paint minutesPaint, Paint datePaint,
+                  String datePattern) {
+        mHoursPaint = hoursPaint;
+        mColonPaint = colonPaint;
+        mMinutesPaint = minutesPaint;
+        mDatePaint = datePaint;
+        mDateFormat = new SimpleDateFormat(datePattern);
+    }
+
+    void invalidateMeasurements() {
+        mWidthsValid = false;
+        mDateDay = -1;
+    }
+
+    void setTimeZone(TimeZone timeZone) {
+        mDateFormat.setTimeZone(timeZone);
+        mDateDay = -1;
+    }
+
+    private void measureDigits() {
+        for (int i = 0; i < mHourWidths.length; i++) {
+            mHourWidths[i] = mHoursPaint.measureText(TWO_DIGITS, i * 2, 2);
+        }
+        for (int i = 0; i < mMinuteWidths.length; i++) {
+            mMinuteWidths[i] = mMinutesPaint.measureText(TWO_DIGITS, i * 2, 2);
+        }
+        mColonWidth = mColonPaint.measureText(COLON, 0, 1);
+        mWidthsValid = true;
+    }
+
+    /**
+     * Draws HH:MM for the calendar's time, centered on centerX.
+     */
+    void drawTime(Canvas canvas, Calendar calendar, float centerX, float y) {
+        if (!mWidthsValid) {
+            measureDigits();
+        }
+        int hour = calendar.get(Calendar.HOUR_OF_DAY);
+        int minute = calendar.get(Calendar.MINUTE);
+
+        float x = centerX - (mHourWidths[hour] + mColonWidth + mMinuteWidths[minute]) / 2;
+        canvas.drawText(TWO_DIGITS, hour * 2, 2, x, y, mHoursPaint);
+        x += mHourWidths[hour];
+        canvas.drawText(COLON, 0, 1, x, y, mColonPaint);
+        x += mColonWidth;
+        canvas.drawText(TWO_DIGITS, minute * 2, 2, x, y, mMinutesPaint);
+    }
+
+    /**
+     * Draws the calendar's date in upper case, centered on centerX.
+     */
+    void drawDate(Canvas canvas, Calendar calendar, float centerX, float y) {
+        String dateText = getDateText(calendar);
+        canvas.drawText(dateText, centerX - mDateWidth / 2, y, mDatePaint);
+    }
+
+    String getDateText(Calendar calendar) {
+        int day = calendar.get(Calendar.YEAR) * 1000 + calendar.get(Calendar.DAY_OF_YEAR);
+        if (day != mDateDay) {
+            mDate.setTime(calendar.getTimeInMillis());
+            mDateText = mDateFormat.format(mDate).toUpperCase();
+            mDateWidth = mDatePaint.measureText(mDateText);
+            mDateDay = day;
+        }
+        return mDateText;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+
+/**
+ * Holds the weather icon the watch face draws, decoded and scaled once per
+ * (weather id, size, mode) instead of on every frame.  Only the current weather id and size
+ * are kept; asking for a different one drops the old bitmaps.  Lookups don't allocate, so
+ * onDraw can call {@link #get} every frame.
+ */
+final class WeatherIconCache {
+    static final int MODE_INTERACTIVE = 0;
+    // Grayscale, for ambient mode.
+    static final int MODE_AMBIENT = 1;
+    // Grayscale and unfiltered, for screens with fewer bits per color in ambient mode.
+    static final int MODE_LOW_BIT_AMBIENT = 2;
+    private static final int MODE_COUNT = 3;
+
+    private final Resources mResources;
+    private final Bitmap[] mIcons = new Bitmap[MODE_COUNT];
+    private int mWeatherId = -1;
+    private int mSize;
+
+    WeatherIconCache(Resources resources) {
+        mResources = resources;
+    }
+
+    /**
+     * @return the icon for weatherId, scaled to size x size pixels and prepared for mode.
+     */
+    Bitmap get(int weatherId, int size, int mode) {
+        if (weatherId != mWeatherId || size != mSize) {
+            clear();
+            mWeatherId = weatherId;
+            mSize = size;
+        }
+        Bitmap icon = mIcons[mode];
+        if (icon == null) {
+            icon = createIcon(weatherId, size, mode);
+            mIcons[mode] = icon;
+        }
+        return icon;
+    }
+
+    /**
+     * Releases every cached bitmap.  The next {@link #get} decodes again.
+     */
+    void clear() {
+        for (int i = 0; i < MODE_COUNT; i++) {
+            if (mIcons[i] != null) {
+                mIcons[i].recycle();
+                mIcons[i] = null;
+            }
+        }
+        mWeatherId = -1;
+    }
+
+    private Bitmap createIcon(int weatherId, int size, int mode) {
+        Bitmap art = BitmapFactory.decodeResource(mResources,
+                Utility.getArtResourceForWeatherCondition(weatherId));
+        Bitmap scaled = Bitmap.createScaledBitmap(art, size, size, mode != MODE_LOW_BIT_AMBIENT);
+        if (scaled != art) {
+            art.recycle();
+        }
+        if (mode == MODE_INTERACTIVE) {
+            return scaled;
+        }
+
+        Bitmap gray = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        ColorMatrix grayscale = new ColorMatrix();
+        grayscale.setSaturation(0);
+        Paint paint = new Paint();
+        paint.setColorFilter(new ColorMatrixColorFilter(grayscale));
+        new Canvas(gray).drawBitmap(scaled, 0, 0, paint);
+        scaled.recycle();
+        return gray;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.app;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The forecast the watch knows about, shared in-process between
+ * {@link WeatherWearableListenerService}, which publishes what the phone sends, and the
+ * watch face, which listens for it.  Backed by the {@link ForecastSnapshot} file so it
+ * survives process restarts.
+ */
+final class WeatherRepository {
+    interface Listener {
+        /**
+         * Called on the main thread with each newly published forecast.
+         */
+        void onForecastChanged(ForecastSnapshot forecast);
+    }
+
+    private static WeatherRepository sInstance;
+
+    private final Context mContext;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+    private ForecastSnapshot mForecast;
+    private boolean mLoaded;
+
+    static synchronized WeatherRepository getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WeatherRepository(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    WeatherRepository(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * @return the latest forecast, read from disk on first use, or null if there's none yet.
+     */
+    synchronized ForecastSnapshot getForecast() {
+        if (!mLoaded) {
+            mForecast = ForecastSnapshot.read(mContext);
+            mLoaded = true;
+        }
+        return mForecast;
+    }
+
+    /**
+     * Stores a new forecast and tells the listeners.  Can be called from any thread; the disk
+     * write happens on the caller's, and concurrent publishes are written one at a time so the
+     * file always ends up holding the same forecast as memory.
+     */
+    void publish(final ForecastSnapshot forecast) {
+        synchronized (this) {
+            forecast.write(mContext);
+            mForecast = forecast;
+            mLoaded = true;
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Listener listener : mListeners) {
+                    listener.onForecastChanged(forecast);
+                }
+            }
+        });
+    }
+
+    void addListener(Listener listener) {
+        mListeners.addIfAbsent(listener);
+    }
+
+    void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+}